@@ -0,0 +1,81 @@
+package com.softvarivm.pocs.webclient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.notFound;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.serviceUnavailable;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The application, without its web server, wired to an in-process WireMock server stubbing the
+ * remote service:
+ *
+ * <ul>
+ *   <li>{@code /mock/ok} answers {@code 200} with {@link #OK_BODY}
+ *   <li>{@code /mock/notfound} answers {@code 404}
+ *   <li>{@code /mock/unavailable} answers {@code 503}, so every call goes through all the retries
+ * </ul>
+ *
+ * Whatever would make the measures depend on the history of the run is switched off: caching,
+ * hedging, circuit breaking, the retry budget, the adaptive concurrency limit and the warm-up.
+ * Retries back off 1 ms instead of 500 ms.
+ */
+public final class StubbedApplication implements AutoCloseable {
+
+  public static final String OK_BODY = "{\"scenario\":\"ok\",\"value\":\"here you have a value\"}";
+
+  private final WireMockServer wireMock;
+  private final ConfigurableApplicationContext ctx;
+
+  /**
+   * @param extraProperties properties overriding the ones set for the benchmarks, as {@code
+   *     key=value}
+   */
+  public StubbedApplication(final String... extraProperties) {
+    wireMock = new WireMockServer(options().dynamicPort().dynamicHttpsPort());
+    wireMock.start();
+    wireMock.stubFor(get("/mock/ok").willReturn(okJson(OK_BODY)));
+    wireMock.stubFor(get("/mock/notfound").willReturn(notFound()));
+    wireMock.stubFor(get("/mock/unavailable").willReturn(serviceUnavailable()));
+
+    final List<String> properties =
+        new ArrayList<>(
+            List.of(
+                "service.remote.baseUrl=https://localhost",
+                "service.remote.httpPort=" + wireMock.port(),
+                "service.remote.httpsPort=" + wireMock.httpsPort(),
+                "service.cache.enabled=false",
+                "service.hedging.defaults.enabled=false",
+                "service.circuitbreaker.slidingWindowType=TIME_BASED",
+                "service.circuitbreaker.slidingWindowSize=1",
+                "service.circuitbreaker.minimumNumberOfCalls=" + Integer.MAX_VALUE,
+                "service.retry.minBackoff=1ms",
+                "service.retry.budget.minPerSecond=" + Integer.MAX_VALUE,
+                "service.remote.concurrency.enabled=false",
+                "service.warmup.enabled=false",
+                "logging.level.root=WARN"));
+    properties.addAll(List.of(extraProperties));
+    ctx =
+        new SpringApplicationBuilder(WebclientApplication.class)
+            .web(WebApplicationType.NONE)
+            // as command line arguments, so that they override application.yaml
+            .run(properties.stream().map(p -> "--" + p).toArray(String[]::new));
+  }
+
+  public <T> T getBean(final Class<T> type) {
+    return ctx.getBean(type);
+  }
+
+  @Override
+  public void close() {
+    ctx.close();
+    wireMock.stop();
+  }
+}
@@ -0,0 +1,74 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.softvarivm.pocs.webclient.StubbedApplication;
+import com.softvarivm.pocs.webclient.entities.ProblemDetails;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+
+/**
+ * Error path of {@link StupidService}: mapping of the error status codes and creation of the {@link
+ * ProblemDetails} handed over to the caller. Run with {@code -prof gc} to get the allocation rate
+ * per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ErrorMappingBenchmark {
+
+  private final ServiceException notFound =
+      new ServiceException("Resource not found", HttpStatus.NOT_FOUND.value());
+
+  private StubbedApplication app;
+  private StupidService service;
+  private ObjectMapper objectMapper;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    app = new StubbedApplication();
+    service = app.getBean(StupidService.class);
+    objectMapper = app.getBean(ObjectMapper.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    app.close();
+  }
+
+  @Benchmark
+  public Mono<? extends Throwable> handleClientErrors() {
+    return service.handleClientErrors(HttpStatus.NOT_FOUND);
+  }
+
+  @Benchmark
+  public Mono<? extends Throwable> handleServerErrors() {
+    return service.handleServerErrors(HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  @Benchmark
+  public ProblemDetails createProblemDetails() {
+    return service.createProblemDetails(notFound, "/mock/notfound");
+  }
+
+  @Benchmark
+  public byte[] createAndSerializeProblemDetails() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(service.createProblemDetails(notFound, "/mock/notfound"));
+  }
+}
@@ -0,0 +1,84 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.softvarivm.pocs.webclient.StubbedApplication;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+/**
+ * Whole request pipeline of {@link StupidService}, against an in-process stub of the remote
+ * service. Run with {@code -prof gc} to get the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StupidServiceBenchmark {
+
+  private StubbedApplication app;
+  private StupidService service;
+  private ObjectMapper objectMapper;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    app = new StubbedApplication();
+    service = app.getBean(StupidService.class);
+    objectMapper = app.getBean(ObjectMapper.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    app.close();
+  }
+
+  @Benchmark
+  public Object saySomethingOk() {
+    return service.saySomething("ok").block();
+  }
+
+  /** what the controller does on top of {@link #saySomethingOk()}: serializing the body again. */
+  @Benchmark
+  public byte[] saySomethingOkSerialized() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(service.saySomething("ok").block());
+  }
+
+  /** the passthrough alternative to {@link #saySomethingOkSerialized()}. */
+  @Benchmark
+  public Integer passThroughOk() {
+    return service
+        .passThrough("ok")
+        .flatMap(entity -> DataBufferUtils.join(entity.getBody()))
+        .map(
+            buffer -> {
+              final int bytes = buffer.readableByteCount();
+              DataBufferUtils.release(buffer);
+              return bytes;
+            })
+        .block();
+  }
+
+  @Benchmark
+  public Object saySomethingNotFound() {
+    return service.saySomething("notfound").block();
+  }
+
+  @Benchmark
+  public Object saySomethingUnavailableWithRetries() {
+    return service.saySomething("unavailable").block();
+  }
+}
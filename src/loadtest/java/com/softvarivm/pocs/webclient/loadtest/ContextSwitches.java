@@ -0,0 +1,57 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Context switches of the threads of the process, read from {@code /proc} on Linux. Threads ended
+ * between two snapshots take their switches with them, so differences are a lower bound.
+ *
+ * @param voluntary switches of threads waiting, e.g. for I/O or a lock
+ * @param involuntary switches of threads preempted by the scheduler
+ */
+public record ContextSwitches(long voluntary, long involuntary) {
+
+  private static final Path TASKS = Path.of("/proc/self/task");
+
+  /**
+   * @return the switches of the threads alive, {@code null} when {@code /proc} is not available
+   */
+  static ContextSwitches snapshot() {
+    if (!Files.isDirectory(TASKS)) {
+      return null;
+    }
+    long voluntary = 0L;
+    long involuntary = 0L;
+    try (DirectoryStream<Path> tasks = Files.newDirectoryStream(TASKS)) {
+      for (final Path task : tasks) {
+        try {
+          for (final String line : Files.readAllLines(task.resolve("status"))) {
+            if (line.startsWith("voluntary_ctxt_switches:")) {
+              voluntary += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+              involuntary += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            }
+          }
+        } catch (IOException e) {
+          // the thread ended meanwhile
+        }
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    return new ContextSwitches(voluntary, involuntary);
+  }
+
+  /**
+   * @param earlier a snapshot taken before this one, possibly {@code null}
+   * @return the switches from {@code earlier} to this one, {@code null} if unknown
+   */
+  ContextSwitches since(final ContextSwitches earlier) {
+    return earlier == null
+        ? null
+        : new ContextSwitches(voluntary - earlier.voluntary, involuntary - earlier.involuntary);
+  }
+}
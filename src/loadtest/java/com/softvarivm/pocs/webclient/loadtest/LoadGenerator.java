@@ -0,0 +1,148 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Open-loop load generator: requests are sent at a fixed rate whatever the time the application
+ * takes to answer them, so that a slow application cannot slow the load down.<br>
+ * Response times are measured from the time each request was meant to be sent, not from the time
+ * it was actually sent, so that they are not hidden by the generator falling behind (coordinated
+ * omission). Service times, measured from the actual send, are recorded too.
+ */
+final class LoadGenerator implements AutoCloseable {
+
+  static final String OK = "ok";
+  static final String TIMEOUT = "timeout";
+  static final String IO_ERROR = "io_error";
+
+  private static final byte[] NO_BODY = new byte[0];
+
+  private final LoadTestOptions opts;
+  private final ConnectionProvider provider;
+  private final HttpClient client;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  // microseconds
+  private final Recorder responseTime = new Recorder(3);
+  private final Recorder serviceTime = new Recorder(3);
+  private final LongAdder sent = new LongAdder();
+  private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+
+  LoadGenerator(final LoadTestOptions opts, final int port) {
+    this.opts = opts;
+    provider =
+        ConnectionProvider.builder("loadtest")
+            .maxConnections(opts.connections())
+            .pendingAcquireMaxCount(-1)
+            .pendingAcquireTimeout(opts.timeout())
+            .build();
+    client = HttpClient.create(provider).baseUrl("http://localhost:" + port);
+  }
+
+  /**
+   * sends the requests of the warmup and of the measurement, then waits for the outstanding ones.
+   *
+   * @return the report of the measurement
+   */
+  LoadTestReport run() {
+    final double periodNanos = 1e9 / opts.rate();
+    final long start = System.nanoTime();
+    final long measureStart = start + opts.warmup().toNanos();
+    final long end = measureStart + opts.duration().toNanos();
+
+    for (long n = 0; ; n++) {
+      final long intended = start + (long) (n * periodNanos);
+      if (intended - end >= 0) {
+        break;
+      }
+      long wait;
+      while ((wait = intended - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      send(n, intended, intended - measureStart >= 0);
+    }
+
+    final long drainDeadline = System.nanoTime() + opts.timeout().toNanos() + 1_000_000_000L;
+    while (outstanding.get() > 0 && System.nanoTime() - drainDeadline < 0) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L));
+    }
+    final long elapsed = System.nanoTime() - measureStart;
+
+    final Map<String, Long> counts = new TreeMap<>();
+    outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+    return LoadTestReport.of(
+        opts,
+        sent.sum(),
+        counts,
+        elapsed,
+        responseTime.getIntervalHistogram(),
+        serviceTime.getIntervalHistogram());
+  }
+
+  private void send(final long n, final long intended, final boolean measured) {
+    outstanding.incrementAndGet();
+    final long sendStart = System.nanoTime();
+    client
+        .get()
+        .uri(opts.path(n))
+        .responseSingle(
+            (response, body) ->
+                body.asByteArray()
+                    .defaultIfEmpty(NO_BODY)
+                    .map(bytes -> classify(response.status().code(), bytes)))
+        .timeout(opts.timeout())
+        .onErrorResume(TimeoutException.class, e -> Mono.just(TIMEOUT))
+        .onErrorResume(e -> Mono.just(IO_ERROR))
+        .subscribe(
+            outcome -> {
+              if (measured) {
+                final long now = System.nanoTime();
+                responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - intended));
+                serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - sendStart));
+                outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+              }
+              outstanding.decrementAndGet();
+            });
+    if (measured) {
+      sent.increment();
+    }
+  }
+
+  /**
+   * the application answers errors of the remote service with a ProblemDetails, whose status is not
+   * always the one of the response.
+   */
+  private String classify(final int status, final byte[] body) {
+    int problem = 0;
+    if (body.length > 0) {
+      try {
+        problem = objectMapper.readTree(body).path("status").asInt(0);
+      } catch (IOException e) {
+        // not json, not a ProblemDetails
+      }
+    }
+    if (problem >= 400) {
+      return "problem_" + problem;
+    }
+    return status >= 200 && status < 300 ? OK : "http_" + status;
+  }
+
+  @Override
+  public void close() {
+    provider.dispose();
+  }
+}
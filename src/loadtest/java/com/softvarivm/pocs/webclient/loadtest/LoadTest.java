@@ -0,0 +1,143 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.softvarivm.pocs.webclient.WebclientApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end load test of one instance of the application: boots it against an {@link
+ * UpstreamStub}, drives {@code /test/{scenario}} with a {@link LoadGenerator} and writes, in the
+ * output directory:
+ *
+ * <ul>
+ *   <li>{@code <run>.json}: the {@link LoadTestReport}
+ *   <li>{@code <run>.hgrm}: the percentile distribution of the response times, in milliseconds,
+ *       which can be plotted with the HdrHistogram plotter
+ * </ul>
+ *
+ * See {@link LoadTestOptions} for the arguments.
+ */
+public final class LoadTest {
+
+  private LoadTest() {}
+
+  public static void main(final String[] args) throws IOException {
+    final LoadTestOptions opts = LoadTestOptions.parse(args);
+    final LoadTestReport report;
+    try (UpstreamStub stub = new UpstreamStub(opts);
+        ConfigurableApplicationContext app = start(opts, stub);
+        LoadGenerator generator =
+            new LoadGenerator(
+                opts,
+                app.getEnvironment().getRequiredProperty("local.server.port", Integer.class))) {
+      System.out.printf(
+          Locale.ROOT,
+          "Sending %d req/s to %s: %ss of warmup, %ss of measurement%n",
+          opts.rate(),
+          opts.path(0),
+          opts.warmup().toSeconds(),
+          opts.duration().toSeconds());
+      final ContextSwitches before = ContextSwitches.snapshot();
+      final LoadTestReport run = generator.run();
+      final ContextSwitches after = ContextSwitches.snapshot();
+      report =
+          run.withProcess(
+              upstream(app.getBean(MeterRegistry.class)),
+              after == null ? null : after.since(before));
+    }
+    write(opts.output(), report);
+    print(report);
+    // reactor-netty and WireMock may leave non daemon threads behind
+    System.exit(0);
+  }
+
+  private static ConfigurableApplicationContext start(
+      final LoadTestOptions opts, final UpstreamStub stub) {
+    final List<String> args =
+        new ArrayList<>(
+            List.of(
+                "--server.port=0",
+                "--service.remote.baseUrl=https://localhost",
+                "--service.remote.httpsPort=" + stub.httpsPort(),
+                "--logging.level.root=WARN"));
+    // the application arguments given last win
+    args.addAll(opts.appArgs());
+    return new SpringApplicationBuilder(WebclientApplication.class)
+        .run(args.toArray(String[]::new));
+  }
+
+  private static LoadTestReport.Upstream upstream(final MeterRegistry registry) {
+    return new LoadTestReport.Upstream(
+        count(registry, "reactor.netty.http.client.connect.time"),
+        count(registry, "reactor.netty.http.client.tls.handshake.time"));
+  }
+
+  private static long count(final MeterRegistry registry, final String timer) {
+    return registry.find(timer).timers().stream().mapToLong(Timer::count).sum();
+  }
+
+  private static void write(final Path dir, final LoadTestReport report) throws IOException {
+    Files.createDirectories(dir);
+    new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .enable(SerializationFeature.INDENT_OUTPUT)
+        .writeValue(dir.resolve(report.run() + ".json").toFile(), report);
+    try (PrintStream hgrm = new PrintStream(dir.resolve(report.run() + ".hgrm").toFile())) {
+      report.responseTimeHistogram().outputPercentileDistribution(hgrm, 1000.0);
+    }
+  }
+
+  private static void print(final LoadTestReport report) {
+    final LoadTestReport.Percentiles rt = report.responseTime();
+    final LoadTestReport.Percentiles st = report.serviceTime();
+    System.out.printf(
+        Locale.ROOT,
+        "%s: %d sent, %.1f req/s answered, %.2f%% errors %s%n",
+        report.run(),
+        report.sent(),
+        report.throughput(),
+        report.errorRate() * 100.0,
+        report.outcomes());
+    System.out.printf(
+        Locale.ROOT,
+        "  response time (ms): p50 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+        rt.p50(),
+        rt.p99(),
+        rt.p999(),
+        rt.max());
+    System.out.printf(
+        Locale.ROOT,
+        "  service time  (ms): p50 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+        st.p50(),
+        st.p99(),
+        st.p999(),
+        st.max());
+    if (report.upstream() != null) {
+      System.out.printf(
+          Locale.ROOT,
+          "  upstream: %d connections, %d TLS handshakes%n",
+          report.upstream().connections(),
+          report.upstream().tlsHandshakes());
+    }
+    if (report.contextSwitches() != null) {
+      System.out.printf(
+          Locale.ROOT,
+          "  context switches: %d voluntary, %d involuntary%n",
+          report.contextSwitches().voluntary(),
+          report.contextSwitches().involuntary());
+    }
+  }
+}
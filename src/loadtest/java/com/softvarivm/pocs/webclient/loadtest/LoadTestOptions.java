@@ -0,0 +1,134 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Options of a load test run, given as {@code --key=value} arguments. Arguments not known here are
+ * handed over to the application, e.g. {@code --service.cache.enabled=false}.
+ *
+ * @param rate requests per second sent to the application, whatever the time it takes to answer
+ * @param duration length of the measurement
+ * @param warmup length of the run before the measurement, at the same rate
+ * @param scenario scenario requested, {@code /test/{scenario}}
+ * @param distinctScenarios number of distinct scenarios requested in turn ({@code scenario-0},
+ *     {@code scenario-1}...), 1 to always request {@code scenario}; identical concurrent requests
+ *     are coalesced by the application
+ * @param raw whether the passthrough endpoint, {@code /test/{scenario}/raw}, is requested
+ * @param latency median latency of the stubbed remote service
+ * @param latencySigma standard deviation of the log-normal latency of the stub, 0 for a fixed one
+ * @param errorRate share of the requests the stub answers with a 503
+ * @param connections maximum connections opened to the application
+ * @param timeout requests unanswered after this are counted as timed out
+ * @param output directory the reports are written to
+ * @param name name of the run, derived from the options when not given
+ * @param appArgs arguments handed over to the application
+ */
+public record LoadTestOptions(
+    int rate,
+    Duration duration,
+    Duration warmup,
+    String scenario,
+    int distinctScenarios,
+    boolean raw,
+    Duration latency,
+    double latencySigma,
+    double errorRate,
+    int connections,
+    Duration timeout,
+    Path output,
+    String name,
+    List<String> appArgs) {
+
+  public static LoadTestOptions parse(final String... args) {
+    int rate = 200;
+    Duration duration = Duration.ofSeconds(30);
+    Duration warmup = Duration.ofSeconds(10);
+    String scenario = "ok";
+    int distinctScenarios = 1;
+    boolean raw = false;
+    Duration latency = Duration.ofMillis(20);
+    double latencySigma = 0.25;
+    double errorRate = 0.0;
+    int connections = 500;
+    Duration timeout = Duration.ofSeconds(10);
+    Path output = Path.of("target", "loadtest");
+    String name = null;
+    final List<String> appArgs = new ArrayList<>();
+
+    for (final String arg : args) {
+      final int eq = arg.indexOf('=');
+      if (!arg.startsWith("--") || eq < 0) {
+        throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+      }
+      final String value = arg.substring(eq + 1);
+      switch (arg.substring(2, eq)) {
+        case "rate" -> rate = Integer.parseInt(value);
+        case "duration" -> duration = DurationStyle.detectAndParse(value);
+        case "warmup" -> warmup = DurationStyle.detectAndParse(value);
+        case "scenario" -> scenario = value;
+        case "distinctScenarios" -> distinctScenarios = Integer.parseInt(value);
+        case "raw" -> raw = Boolean.parseBoolean(value);
+        case "latency" -> latency = DurationStyle.detectAndParse(value);
+        case "latencySigma" -> latencySigma = Double.parseDouble(value);
+        case "errorRate" -> errorRate = Double.parseDouble(value);
+        case "connections" -> connections = Integer.parseInt(value);
+        case "timeout" -> timeout = DurationStyle.detectAndParse(value);
+        case "output" -> output = Path.of(value);
+        case "name" -> name = value;
+        default -> appArgs.add(arg);
+      }
+    }
+    if (rate <= 0 || distinctScenarios <= 0 || connections <= 0) {
+      throw new IllegalArgumentException("rate, distinctScenarios and connections must be > 0");
+    }
+    if (errorRate < 0.0 || errorRate > 1.0) {
+      throw new IllegalArgumentException("errorRate must be within [0, 1]");
+    }
+    return new LoadTestOptions(
+        rate,
+        duration,
+        warmup,
+        scenario,
+        distinctScenarios,
+        raw,
+        latency,
+        latencySigma,
+        errorRate,
+        connections,
+        timeout,
+        output,
+        name,
+        List.copyOf(appArgs));
+  }
+
+  /**
+   * @param n sequence number of the request
+   * @return path requested by the {@code n}th request
+   */
+  public String path(final long n) {
+    final String name =
+        distinctScenarios == 1 ? scenario : scenario + "-" + Math.floorMod(n, distinctScenarios);
+    return "/test/" + name + (raw ? "/raw" : "");
+  }
+
+  /**
+   * @return a name identifying the run, used to name the reports
+   */
+  public String runName() {
+    if (name != null) {
+      return name;
+    }
+    return String.format(
+        Locale.ROOT,
+        "%s%s-%drps-%.0fpct503",
+        scenario,
+        raw ? "-raw" : "",
+        rate,
+        errorRate * 100.0);
+  }
+}
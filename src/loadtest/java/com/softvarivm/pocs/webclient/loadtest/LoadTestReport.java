@@ -0,0 +1,130 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Outcome of the measurement of a load test run, written as json so that runs can be compared over
+ * time. Times are in milliseconds.
+ *
+ * @param run name of the run
+ * @param timestamp end of the run
+ * @param settings what the run was asked to do
+ * @param sent requests sent during the measurement
+ * @param outcomes answers received, by outcome: {@code ok}, {@code problem_<status>} for a
+ *     ProblemDetails, {@code http_<status>}, {@code timeout} or {@code io_error}
+ * @param errorRate share of the requests sent not answered {@code ok}
+ * @param throughput requests answered per second
+ * @param responseTime latency measured from the time each request was meant to be sent
+ * @param serviceTime latency measured from the time each request was actually sent
+ * @param upstream connections the application opened to the remote service
+ * @param contextSwitches context switches of the whole process, load generator included, during
+ *     the run, warmup included; {@code null} when not on Linux
+ * @param responseTimeHistogram response times, in microseconds
+ */
+public record LoadTestReport(
+    String run,
+    Instant timestamp,
+    Settings settings,
+    long sent,
+    Map<String, Long> outcomes,
+    double errorRate,
+    double throughput,
+    Percentiles responseTime,
+    Percentiles serviceTime,
+    Upstream upstream,
+    ContextSwitches contextSwitches,
+    @JsonIgnore Histogram responseTimeHistogram) {
+
+  /** the options of the run relevant to compare it with another one. */
+  public record Settings(
+      int rate,
+      double durationSeconds,
+      double warmupSeconds,
+      String path,
+      int distinctScenarios,
+      double latencyMillis,
+      double latencySigma,
+      double injectedErrorRate,
+      int connections,
+      double timeoutMillis,
+      List<String> appArgs) {}
+
+  /**
+   * connections opened by the application to the remote service during the whole run, warmup
+   * included, as counted by the reactor-netty client metrics.
+   *
+   * @param connections TCP connections opened
+   * @param tlsHandshakes TLS handshakes performed
+   */
+  public record Upstream(long connections, long tlsHandshakes) {}
+
+  public record Percentiles(
+      double mean, double p50, double p90, double p99, double p999, double max, long count) {
+
+    static Percentiles of(final Histogram micros) {
+      return new Percentiles(
+          micros.getMean() / 1000.0,
+          micros.getValueAtPercentile(50.0) / 1000.0,
+          micros.getValueAtPercentile(90.0) / 1000.0,
+          micros.getValueAtPercentile(99.0) / 1000.0,
+          micros.getValueAtPercentile(99.9) / 1000.0,
+          micros.getMaxValue() / 1000.0,
+          micros.getTotalCount());
+    }
+  }
+
+  static LoadTestReport of(
+      final LoadTestOptions opts,
+      final long sent,
+      final Map<String, Long> outcomes,
+      final long elapsedNanos,
+      final Histogram responseTimeMicros,
+      final Histogram serviceTimeMicros) {
+    final long answered = outcomes.values().stream().mapToLong(Long::longValue).sum();
+    final long ok = outcomes.getOrDefault(LoadGenerator.OK, 0L);
+    return new LoadTestReport(
+        opts.runName(),
+        Instant.now(),
+        new Settings(
+            opts.rate(),
+            opts.duration().toMillis() / 1000.0,
+            opts.warmup().toMillis() / 1000.0,
+            opts.path(0),
+            opts.distinctScenarios(),
+            opts.latency().toNanos() / 1_000_000.0,
+            opts.latencySigma(),
+            opts.errorRate(),
+            opts.connections(),
+            opts.timeout().toMillis(),
+            opts.appArgs()),
+        sent,
+        outcomes,
+        sent == 0 ? 0.0 : (double) (sent - ok) / sent,
+        answered * 1e9 / elapsedNanos,
+        Percentiles.of(responseTimeMicros),
+        Percentiles.of(serviceTimeMicros),
+        null,
+        null,
+        responseTimeMicros);
+  }
+
+  LoadTestReport withProcess(final Upstream counts, final ContextSwitches switches) {
+    return new LoadTestReport(
+        run,
+        timestamp,
+        settings,
+        sent,
+        outcomes,
+        errorRate,
+        throughput,
+        responseTime,
+        serviceTime,
+        counts,
+        switches,
+        responseTimeHistogram);
+  }
+}
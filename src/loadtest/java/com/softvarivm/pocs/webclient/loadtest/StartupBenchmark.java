@@ -0,0 +1,188 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of the packaged application, run as a separate process against an {@link
+ * UpstreamStub}, in three modes:
+ *
+ * <ul>
+ *   <li>{@code jit}: as is
+ *   <li>{@code aot}: with the beans prepared by Spring AOT at build time
+ *   <li>{@code aot-cds}: AOT and an AppCDS archive of the classes loaded, dumped by a training run
+ *       that ends once the first request succeeds
+ * </ul>
+ *
+ * Each mode is started several times and the median of two times is reported, both measured from
+ * the launch of the process: until the health endpoint answers (startup) and until {@code
+ * /test/ok} first answers {@code 200} (first successful request). The report is written as json to
+ * {@code <output>/startup.json}.
+ *
+ * <p>Arguments: the application jar, the output directory, and optionally the runs per mode
+ * (default 5).
+ */
+public final class StartupBenchmark {
+
+  private static final Duration GIVE_UP = Duration.ofSeconds(60);
+
+  private final Path jar;
+  private final int upstreamPort;
+  private final HttpClient http =
+      HttpClient.newBuilder().connectTimeout(Duration.ofMillis(100)).build();
+
+  private StartupBenchmark(final Path jar, final int upstreamPort) {
+    this.jar = jar;
+    this.upstreamPort = upstreamPort;
+  }
+
+  /**
+   * @param startupMillis median time until the health endpoint answers
+   * @param firstRequestMillis median time until {@code /test/ok} answers {@code 200}
+   * @param runs times the application was started
+   */
+  public record Result(double startupMillis, double firstRequestMillis, int runs) {}
+
+  public static void main(final String[] args) throws Exception {
+    final Path jar = Path.of(args[0]);
+    final Path output = Path.of(args[1]);
+    final int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    Files.createDirectories(output);
+    final Path archive = output.resolve("webclient.jsa");
+
+    final Map<String, Result> results = new LinkedHashMap<>();
+    try (UpstreamStub stub =
+        new UpstreamStub(LoadTestOptions.parse("--latency=1ms", "--latencySigma=0"))) {
+      final StartupBenchmark bench = new StartupBenchmark(jar, stub.httpsPort());
+      results.put("jit", bench.measure(runs));
+      results.put("aot", bench.measure(runs, "-Dspring.aot.enabled=true"));
+      bench.train(archive, "-Dspring.aot.enabled=true");
+      results.put(
+          "aot-cds",
+          bench.measure(runs, "-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive));
+    }
+
+    new ObjectMapper()
+        .enable(SerializationFeature.INDENT_OUTPUT)
+        .writeValue(output.resolve("startup.json").toFile(), results);
+    results.forEach(
+        (mode, r) ->
+            System.out.printf(
+                Locale.ROOT,
+                "%-8s startup %7.0f ms, first successful request %7.0f ms (median of %d)%n",
+                mode,
+                r.startupMillis(),
+                r.firstRequestMillis(),
+                r.runs()));
+    // WireMock may leave non daemon threads behind
+    System.exit(0);
+  }
+
+  private Result measure(final int runs, final String... jvmArgs) throws Exception {
+    final double[] startup = new double[runs];
+    final double[] firstRequest = new double[runs];
+    for (int i = 0; i < runs; i++) {
+      final double[] times = start(List.of(jvmArgs));
+      startup[i] = times[0];
+      firstRequest[i] = times[1];
+    }
+    return new Result(median(startup), median(firstRequest), runs);
+  }
+
+  /** dumps the classes loaded until the first request succeeds, when the application exits. */
+  private void train(final Path archive, final String... jvmArgs) throws Exception {
+    Files.deleteIfExists(archive);
+    final List<String> args = new ArrayList<>(List.of(jvmArgs));
+    args.add("-XX:ArchiveClassesAtExit=" + archive);
+    start(args);
+    if (!Files.exists(archive)) {
+      throw new IllegalStateException("The training run did not dump " + archive);
+    }
+  }
+
+  /**
+   * @return milliseconds from the launch until the health endpoint answers and until {@code
+   *     /test/ok} answers {@code 200}
+   */
+  private double[] start(final List<String> jvmArgs) throws Exception {
+    final int port = freePort();
+    final List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmArgs);
+    command.addAll(
+        List.of(
+            "-jar",
+            jar.toString(),
+            "--server.port=" + port,
+            "--service.remote.baseUrl=https://localhost",
+            "--service.remote.httpsPort=" + upstreamPort,
+            "--logging.level.root=WARN"));
+
+    final long launch = System.nanoTime();
+    final Process app = new ProcessBuilder(command).inheritIO().start();
+    try {
+      final long healthy = waitFor(app, "http://localhost:" + port + "/actuator/health", launch);
+      final long served = waitFor(app, "http://localhost:" + port + "/test/ok", launch);
+      return new double[] {millis(healthy - launch), millis(served - launch)};
+    } finally {
+      // SIGTERM: the JVM exits normally, which dumps the archive of a training run
+      app.destroy();
+      if (!app.waitFor(30, TimeUnit.SECONDS)) {
+        app.destroyForcibly();
+      }
+    }
+  }
+
+  private long waitFor(final Process app, final String url, final long launch)
+      throws InterruptedException {
+    final HttpRequest request =
+        HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(1)).build();
+    while (System.nanoTime() - launch < GIVE_UP.toNanos()) {
+      if (!app.isAlive()) {
+        throw new IllegalStateException("The application exited with " + app.exitValue());
+      }
+      try {
+        if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return System.nanoTime();
+        }
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(5L);
+    }
+    throw new IllegalStateException(url + " did not answer 200 within " + GIVE_UP);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static double millis(final long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  private static double median(final double[] values) {
+    final double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    final int mid = sorted.length / 2;
+    return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
+  }
+}
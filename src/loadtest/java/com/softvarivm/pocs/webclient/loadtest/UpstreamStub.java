@@ -0,0 +1,85 @@
+package com.softvarivm.pocs.webclient.loadtest;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-process WireMock server standing for the remote service: every {@code /mock/{scenario}} is
+ * answered with a {@code 200} after a log-normal random latency, except for a share of the requests
+ * answered with a {@code 503}, so that the retry path of the application gets exercised.
+ */
+final class UpstreamStub implements AutoCloseable {
+
+  static final String OK_BODY = "{\"scenario\":\"load\",\"value\":\"here you have a value\"}";
+
+  private final WireMockServer wireMock;
+
+  UpstreamStub(final LoadTestOptions opts) {
+    wireMock =
+        new WireMockServer(
+            options()
+                .dynamicPort()
+                .dynamicHttpsPort()
+                .containerThreads(200)
+                // delays are served by a scheduler instead of sleeping container threads
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(8)
+                // the journal of requests would grow for the whole run
+                .disableRequestJournal()
+                .extensions(new ErrorInjector(opts.errorRate())));
+    wireMock.start();
+
+    final ResponseDefinitionBuilder ok = okJson(OK_BODY);
+    final double medianMillis = opts.latency().toNanos() / 1_000_000.0;
+    if (opts.latencySigma() > 0.0) {
+      ok.withLogNormalRandomDelay(medianMillis, opts.latencySigma());
+    } else {
+      ok.withFixedDelay((int) Math.round(medianMillis));
+    }
+    wireMock.stubFor(get(urlPathMatching("/mock/.*")).willReturn(ok));
+  }
+
+  int httpsPort() {
+    return wireMock.httpsPort();
+  }
+
+  @Override
+  public void close() {
+    wireMock.stop();
+  }
+
+  /** turns the answer of a share of the requests into a {@code 503}, keeping its latency. */
+  private static final class ErrorInjector implements ResponseDefinitionTransformerV2 {
+    private final double errorRate;
+
+    ErrorInjector(final double errorRate) {
+      this.errorRate = errorRate;
+    }
+
+    @Override
+    public ResponseDefinition transform(final ServeEvent serveEvent) {
+      final ResponseDefinition definition = serveEvent.getResponseDefinition();
+      if (errorRate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= errorRate) {
+        return definition;
+      }
+      return ResponseDefinitionBuilder.like(definition)
+          .withStatus(503)
+          .withBody("{\"error\":\"injected\"}")
+          .build();
+    }
+
+    @Override
+    public String getName() {
+      return "error-injector";
+    }
+  }
+}
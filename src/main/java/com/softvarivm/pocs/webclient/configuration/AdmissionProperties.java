@@ -0,0 +1,45 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Requests let in by the application, see {@link
+ * com.softvarivm.pocs.webclient.service.AdmissionControl}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.admission")
+public class AdmissionProperties {
+
+  /** whether requests over the limits are shed; when not, every request is admitted. */
+  private boolean enabled = true;
+
+  /** requests handled at once; more are answered a 503 right away. */
+  private int maxInFlight = 200;
+
+  /** requests per second allowed to a single client, {@code 0} for no limit. */
+  private double perClientRate = 0.0;
+
+  /**
+   * header naming the client, only trusted from the {@link #trustedProxies}; clients are named by
+   * the remote address of the connection otherwise.
+   */
+  private String clientHeader = "X-Client-Id";
+
+  /** addresses, as IP literals, of the proxies allowed to name the client with the header. */
+  private List<String> trustedProxies = new ArrayList<>();
+
+  /** clients whose rate is tracked; the least recently seen are forgotten first. */
+  private long maxClients = 10_000L;
+
+  /** time after which the rate of a client not seen is forgotten. */
+  private Duration clientIdleTime = Duration.ofMinutes(5);
+
+  /** time the callers shed for being over {@link #maxInFlight} are told to wait. */
+  private Duration retryAfter = Duration.ofSeconds(1);
+}
@@ -0,0 +1,18 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Batch endpoint, see {@link com.softvarivm.pocs.webclient.controllers.StupidController}. */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.batch")
+public class BatchProperties {
+
+  /** scenarios of a batch requested to the remote service at the same time. */
+  private int concurrency = 8;
+
+  /** most scenarios a batch may hold. */
+  private int maxSize = 100;
+}
@@ -0,0 +1,34 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning of the in-memory cache of upstream responses kept by {@link
+ * com.softvarivm.pocs.webclient.service.ResponseCache}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.cache")
+public class CacheProperties {
+
+  /** whether upstream responses are cached at all. */
+  private boolean enabled = true;
+
+  /** maximum number of upstream URIs kept; the least recently used ones are evicted first. */
+  private long maximumSize = 1_000;
+
+  /** freshness of a response when the upstream does not send a {@code Cache-Control} max-age. */
+  private Duration ttl = Duration.ofSeconds(30);
+
+  /** upper bound of the freshness announced by the upstream with {@code max-age}. */
+  private Duration maxTtl = Duration.ofMinutes(10);
+
+  /**
+   * how long after it went stale a response may still be served while the upstream is failing. The
+   * upstream may ask for a shorter period with {@code stale-if-error}.
+   */
+  private Duration staleIfError = Duration.ofMinutes(5);
+}
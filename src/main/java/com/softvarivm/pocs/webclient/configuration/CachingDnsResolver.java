@@ -0,0 +1,368 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.dns.DnsCache;
+import io.netty.resolver.dns.DnsCacheEntry;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.resolver.dns.DnsNameResolverException;
+import io.netty.resolver.dns.NoopDnsCnameCache;
+import io.netty.resolver.dns.SequentialDnsServerAddressStreamProvider;
+import io.netty.util.NetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves the hosts of the remote service asynchronously, on an event loop of the clients, with
+ * Netty's DNS resolver instead of the blocking one of the JDK, and caches the answers itself:
+ *
+ * <ul>
+ *   <li>answers are kept for the TTL of their records, bounded by {@code service.remote.dns.minTtl}
+ *       and {@code maxTtl}; hosts not found for {@code negativeTtl}
+ *   <li>an answer used with less than {@code refreshAhead} left is resolved again in the
+ *       background, so that the hosts in use never wait for the name server
+ *   <li>when a host cannot be resolved again (timeout, name server down), its expired answer is
+ *       used for up to {@code serveStale} more, instead of failing the connection
+ * </ul>
+ *
+ * Concurrent resolutions of the same host share a single query. The name servers can be given in
+ * {@code nameServers}, e.g. a local stand-in, otherwise those of the system are queried.<br>
+ * The latency of every query is recorded in {@code upstream.dns.resolutions}, tagged with its
+ * result, and the way answers are served in {@code upstream.dns.cache}.
+ */
+public final class CachingDnsResolver extends AddressResolverGroup<InetSocketAddress> {
+  private static final Logger LOG = LogManager.getLogger(CachingDnsResolver.class);
+
+  /** an answer, or a host not found, and until when it can be used. */
+  private record Entry(
+      List<InetAddress> addresses, UnknownHostException notFound, long expires, long staleUntil) {}
+
+  private final DnsNameResolver resolver;
+  private final TtlRecorder ttls = new TtlRecorder();
+  // a few hosts at most, those of the replicas of the remote service
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, Mono<List<InetAddress>>> queries = new ConcurrentHashMap<>();
+
+  private final long minTtlNanos;
+  private final long maxTtlNanos;
+  private final long negativeTtlNanos;
+  private final long refreshAheadNanos;
+  private final long serveStaleNanos;
+  private final LongSupplier nanoClock;
+
+  private final MeterRegistry registry;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter negativeHits;
+  private final Counter staleHits;
+  private final Counter refreshes;
+
+  public CachingDnsResolver(
+      final DnsProperties props, final EventLoops eventLoops, final MeterRegistry registry) {
+    this(
+        props,
+        eventLoops.client().onClient(eventLoops.preferNative()).next(),
+        eventLoops
+            .client()
+            .onChannelClass(
+                DatagramChannel.class, eventLoops.client().onClient(eventLoops.preferNative())),
+        registry,
+        System::nanoTime);
+  }
+
+  // VisibleForTesting
+  CachingDnsResolver(
+      final DnsProperties props,
+      final EventLoop eventLoop,
+      final Class<? extends DatagramChannel> channelType,
+      final MeterRegistry meterRegistry,
+      final LongSupplier clock) {
+    final DnsNameResolverBuilder builder =
+        new DnsNameResolverBuilder(eventLoop)
+            .channelType(channelType)
+            // the answers are cached here, with their TTL recorded as they are received
+            .resolveCache(ttls)
+            .cnameCache(NoopDnsCnameCache.INSTANCE)
+            .queryTimeoutMillis(props.getQueryTimeout().toMillis());
+    if (!props.getNameServers().isEmpty()) {
+      final List<InetSocketAddress> nameServers = new ArrayList<>();
+      for (final String nameServer : props.getNameServers()) {
+        nameServers.add(nameServerOf(nameServer));
+      }
+      builder.nameServerProvider(new SequentialDnsServerAddressStreamProvider(nameServers));
+    }
+    resolver = builder.build();
+    minTtlNanos = props.getMinTtl().toNanos();
+    maxTtlNanos = Math.max(minTtlNanos, props.getMaxTtl().toNanos());
+    negativeTtlNanos = props.getNegativeTtl().toNanos();
+    refreshAheadNanos = props.getRefreshAhead().toNanos();
+    serveStaleNanos = props.getServeStale().toNanos();
+    nanoClock = clock;
+
+    registry = meterRegistry;
+    hits = cacheCounter("hit");
+    misses = cacheCounter("miss");
+    negativeHits = cacheCounter("negative_hit");
+    staleHits = cacheCounter("stale");
+    refreshes = cacheCounter("refresh");
+    Gauge.builder("upstream.dns.cache.size", entries, Map::size)
+        .description("hosts cached, found or not")
+        .register(registry);
+    LOG.info(
+        "Upstream hosts resolved with {} name servers",
+        props.getNameServers().isEmpty() ? "the system" : props.getNameServers());
+  }
+
+  private static InetSocketAddress nameServerOf(final String nameServer) {
+    final int colon = nameServer.lastIndexOf(':');
+    return colon < 0
+        ? new InetSocketAddress(nameServer, 53)
+        : new InetSocketAddress(
+            nameServer.substring(0, colon), Integer.parseInt(nameServer.substring(colon + 1)));
+  }
+
+  private Counter cacheCounter(final String result) {
+    return Counter.builder("upstream.dns.cache")
+        .description("resolutions of the hosts of the remote service, by how they were served")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  @Override
+  protected AddressResolver<InetSocketAddress> newResolver(final EventExecutor executor) {
+    return new CachingNameResolver(executor).asAddressResolver();
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    resolver.close();
+  }
+
+  /**
+   * @param host the host to resolve
+   * @return the addresses of {@code host}, from the cache if they can be, or an {@link
+   *     UnknownHostException}
+   */
+  public Mono<List<InetAddress>> resolveAll(final String host) {
+    return Mono.defer(
+        () -> {
+          final byte[] literal = NetUtil.createByteArrayFromIpAddressString(host);
+          if (literal != null) {
+            return Mono.fromCallable(() -> List.of(InetAddress.getByAddress(host, literal)));
+          }
+          final String key = host.toLowerCase(Locale.ROOT);
+          final long now = nanoClock.getAsLong();
+          final Entry entry = entries.get(key);
+          if (entry != null && entry.expires - now > 0L) {
+            if (entry.notFound != null) {
+              negativeHits.increment();
+              return Mono.error(entry.notFound);
+            }
+            hits.increment();
+            if (entry.expires - now < refreshAheadNanos) {
+              refreshes.increment();
+              query(key).subscribe(addresses -> {}, e -> {});
+            }
+            return Mono.just(entry.addresses);
+          }
+          misses.increment();
+          return query(key)
+              .onErrorResume(
+                  e -> {
+                    if (isNotFound(e)
+                        || entry == null
+                        || entry.addresses == null
+                        || entry.staleUntil - now <= 0L) {
+                      return Mono.error(e);
+                    }
+                    staleHits.increment();
+                    LOG.warn(
+                        "{} cannot be resolved, expired answer used: {}", host, e.getMessage());
+                    return Mono.just(entry.addresses);
+                  });
+        });
+  }
+
+  /** sends a query for {@code host}, or joins the one in flight, and caches its answer. */
+  private Mono<List<InetAddress>> query(final String host) {
+    return queries.computeIfAbsent(
+        host,
+        h -> {
+          final Timer.Sample sample = Timer.start(registry);
+          return Mono.<List<InetAddress>>create(
+                  sink ->
+                      resolver
+                          .resolveAll(h)
+                          .addListener(
+                              (Future<List<InetAddress>> f) -> {
+                                if (f.isSuccess()) {
+                                  sink.success(f.getNow());
+                                } else {
+                                  sink.error(f.cause());
+                                }
+                              }))
+              .doOnNext(
+                  addresses -> {
+                    cacheAnswer(h, addresses);
+                    sample.stop(resolutionTimer("success"));
+                  })
+              .doOnError(
+                  e -> {
+                    if (isNotFound(e)) {
+                      cacheNotFound(h, (UnknownHostException) e);
+                      sample.stop(resolutionTimer("not_found"));
+                    } else {
+                      sample.stop(resolutionTimer("error"));
+                    }
+                  })
+              .doFinally(signalType -> queries.remove(h))
+              .cache();
+        });
+  }
+
+  private void cacheAnswer(final String host, final List<InetAddress> addresses) {
+    final long recorded = ttls.take(host);
+    // hosts files and literals carry no TTL
+    final long ttl =
+        recorded < 0L
+            ? minTtlNanos
+            : Math.max(minTtlNanos, Math.min(maxTtlNanos, TimeUnit.SECONDS.toNanos(recorded)));
+    final long now = nanoClock.getAsLong();
+    entries.put(
+        host, new Entry(List.copyOf(addresses), null, now + ttl, now + ttl + serveStaleNanos));
+  }
+
+  private void cacheNotFound(final String host, final UnknownHostException notFound) {
+    ttls.take(host);
+    final long now = nanoClock.getAsLong();
+    entries.put(host, new Entry(null, notFound, now + negativeTtlNanos, now + negativeTtlNanos));
+  }
+
+  /**
+   * @return whether the name server answered that the host does not exist, as opposed to not
+   *     answering at all
+   */
+  private static boolean isNotFound(final Throwable e) {
+    if (!(e instanceof UnknownHostException)) {
+      return false;
+    }
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof DnsNameResolverException) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Timer resolutionTimer(final String result) {
+    return Timer.builder("upstream.dns.resolutions")
+        .description("queries sent to resolve the hosts of the remote service")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  /** resolves through the cache, on behalf of the connections of an event loop. */
+  private final class CachingNameResolver extends InetNameResolver {
+
+    private CachingNameResolver(final EventExecutor executor) {
+      super(executor);
+    }
+
+    @Override
+    protected void doResolve(final String inetHost, final Promise<InetAddress> promise) {
+      CachingDnsResolver.this
+          .resolveAll(inetHost)
+          .subscribe(addresses -> promise.trySuccess(addresses.get(0)), promise::tryFailure);
+    }
+
+    @Override
+    protected void doResolveAll(final String inetHost, final Promise<List<InetAddress>> promise) {
+      CachingDnsResolver.this
+          .resolveAll(inetHost)
+          .subscribe(promise::trySuccess, promise::tryFailure);
+    }
+  }
+
+  /**
+   * Netty's cache, which caches nothing, so that every resolution asks the name server, but records
+   * the lowest TTL of the records of every answer received.
+   */
+  private static final class TtlRecorder implements DnsCache {
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+
+    /**
+     * @return the TTL of the last answer received for {@code hostname}, in seconds, {@code -1} if
+     *     none
+     */
+    long take(final String hostname) {
+      final Long ttl = ttls.remove(hostname);
+      return ttl != null ? ttl : -1L;
+    }
+
+    private static String keyOf(final String hostname) {
+      final String key = hostname.toLowerCase(Locale.ROOT);
+      return key.endsWith(".") ? key.substring(0, key.length() - 1) : key;
+    }
+
+    @Override
+    public void clear() {
+      ttls.clear();
+    }
+
+    @Override
+    public boolean clear(final String hostname) {
+      return ttls.remove(keyOf(hostname)) != null;
+    }
+
+    @Override
+    public List<? extends DnsCacheEntry> get(final String hostname, final DnsRecord[] additionals) {
+      return null;
+    }
+
+    @Override
+    public DnsCacheEntry cache(
+        final String hostname,
+        final DnsRecord[] additionals,
+        final InetAddress address,
+        final long originalTtl,
+        final EventLoop loop) {
+      ttls.merge(keyOf(hostname), originalTtl, Math::min);
+      return new Recorded(address, null);
+    }
+
+    @Override
+    public DnsCacheEntry cache(
+        final String hostname,
+        final DnsRecord[] additionals,
+        final Throwable cause,
+        final EventLoop loop) {
+      return new Recorded(null, cause);
+    }
+  }
+
+  private record Recorded(InetAddress address, Throwable cause) implements DnsCacheEntry {}
+}
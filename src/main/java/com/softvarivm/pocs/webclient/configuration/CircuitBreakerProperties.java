@@ -0,0 +1,40 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig.SlidingWindowType;
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning of the circuit breaker protecting the remote service, see {@link ResilienceConfiguration}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.circuitbreaker")
+public class CircuitBreakerProperties {
+
+  /** whether the sliding window counts the last calls or the calls of the last seconds. */
+  private SlidingWindowType slidingWindowType = SlidingWindowType.COUNT_BASED;
+
+  /** number of calls, or seconds, in the sliding window. */
+  private int slidingWindowSize = 50;
+
+  /** calls to be recorded in the window before any rate is computed. */
+  private int minimumNumberOfCalls = 20;
+
+  /** percentage of failed calls in the window opening the circuit. */
+  private float failureRateThreshold = 50;
+
+  /** percentage of slow calls in the window opening the circuit. */
+  private float slowCallRateThreshold = 80;
+
+  /** calls lasting longer than this are slow. */
+  private Duration slowCallDurationThreshold = Duration.ofMillis(400);
+
+  /** time the circuit stays open, failing fast, before letting trial calls through. */
+  private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+
+  /** trial calls let through while the circuit is half-open. */
+  private int permittedNumberOfCallsInHalfOpenState = 5;
+}
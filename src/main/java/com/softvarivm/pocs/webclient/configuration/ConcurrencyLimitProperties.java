@@ -0,0 +1,49 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Calls to the remote service allowed at once, adapted to its latency, see {@link
+ * com.softvarivm.pocs.webclient.service.ConcurrencyLimiter}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.remote.concurrency")
+public class ConcurrencyLimitProperties {
+
+  /** whether calls are limited; when not, every call is sent right away. */
+  private boolean enabled = true;
+
+  /** calls allowed at once before any latency has been observed. */
+  private int initialLimit = 20;
+
+  /** the limit never goes below, whatever the latency or the errors. */
+  private int minLimit = 4;
+
+  /** the limit never goes above, however flat the latency. */
+  private int maxLimit = 200;
+
+  /**
+   * latency allowed over the long term average before the limit shrinks, as a ratio: {@code 1.5}
+   * lets it grow while the latency is within 50% of the average.
+   */
+  private double rttTolerance = 1.5;
+
+  /** weight of every new limit computed, between 0 and 1; lower values change it slower. */
+  private double smoothing = 0.2;
+
+  /** calls the long term average latency is computed over. */
+  private int longWindow = 600;
+
+  /** the limit is multiplied by this on every call answered a 503, 504 or not answered at all. */
+  private double backoffRatio = 0.9;
+
+  /** calls waiting for room over the limit; more are rejected right away. */
+  private int maxQueued = 100;
+
+  /** time a call waits for room over the limit before being rejected. */
+  private Duration queueTimeout = Duration.ofMillis(50);
+}
@@ -0,0 +1,51 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning of the {@link reactor.netty.resources.ConnectionProvider} shared by the {@link
+ * org.springframework.web.reactive.function.client.WebClient} beans declared in {@link
+ * GeneralConfiguration}. Every limit applies per remote host.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.remote.pool")
+public class ConnectionPoolProperties {
+
+  /** name of the pool, used as tag of the pool gauges. */
+  private String name = "upstream";
+
+  /** maximum number of connections opened to the same remote host. */
+  private int maxConnections = 50;
+
+  /** maximum number of requests waiting for a connection; beyond it acquisitions fail. */
+  private int pendingAcquireMaxCount = 100;
+
+  /** time a request may wait for a connection before failing. */
+  private Duration pendingAcquireTimeout = Duration.ofMillis(500);
+
+  /** idle connections older than this are closed, before the remote does it for us. */
+  private Duration maxIdleTime = Duration.ofSeconds(20);
+
+  /** connections are closed once they reach this age, no matter they are being used. */
+  private Duration maxLifeTime = Duration.ofMinutes(5);
+
+  /** period of the background eviction task; zero means eviction only on acquire/release. */
+  private Duration evictInBackground = Duration.ofSeconds(30);
+
+  /** order in which idle connections are leased. */
+  private LeasingStrategy leasingStrategy = LeasingStrategy.LIFO;
+
+  /** whether pool gauges (active, idle, pending...) are registered in Micrometer. */
+  private boolean metricsEnabled = true;
+
+  public enum LeasingStrategy {
+    /** the least recently used connection is leased first, spreading load on all connections. */
+    FIFO,
+    /** the most recently used connection is leased first, letting the rest idle out. */
+    LIFO
+  }
+}
@@ -0,0 +1,41 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Time a caller waits for an answer, retries included, see {@link
+ * com.softvarivm.pocs.webclient.service.Deadlines}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.deadline")
+public class DeadlineProperties {
+
+  /** time allowed to the requests of the scenarios not listed in {@link #scenarios}. */
+  private Duration defaultTimeout = Duration.ofSeconds(10);
+
+  /** time allowed to the requests of a scenario, when the caller does not ask for another one. */
+  private Map<String, Duration> scenarios = new HashMap<>();
+
+  /** most time a caller may ask for. */
+  private Duration maxTimeout = Duration.ofSeconds(30);
+
+  /** most time an attempt waits for the remote service, whatever the time left. */
+  private Duration attemptTimeout = Duration.ofMillis(500);
+
+  /** least time left for an attempt to be worth sending; no retry is sent with less. */
+  private Duration minAttemptTime = Duration.ofMillis(50);
+
+  /**
+   * @param scenario the scenario requested
+   * @return the time allowed to the requests of {@code scenario}
+   */
+  public Duration timeoutOf(final String scenario) {
+    return scenarios.getOrDefault(scenario, defaultTimeout);
+  }
+}
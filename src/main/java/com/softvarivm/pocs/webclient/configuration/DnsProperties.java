@@ -0,0 +1,36 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Resolution of the hosts of the remote service, see {@link CachingDnsResolver}. */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.remote.dns")
+public class DnsProperties {
+
+  /** least time an answer is cached, whatever the TTL of its records. */
+  private Duration minTtl = Duration.ofSeconds(10);
+
+  /** most time an answer is cached, whatever the TTL of its records. */
+  private Duration maxTtl = Duration.ofMinutes(5);
+
+  /** time a host found not to exist is remembered as such. */
+  private Duration negativeTtl = Duration.ofSeconds(5);
+
+  /** an answer used with less time than this left is resolved again, in the background. */
+  private Duration refreshAhead = Duration.ofSeconds(5);
+
+  /** time an expired answer is still used when the host cannot be resolved again. */
+  private Duration serveStale = Duration.ofMinutes(5);
+
+  /** time a query waits for the name server. */
+  private Duration queryTimeout = Duration.ofSeconds(1);
+
+  /** name servers queried, as {@code host:port}; those of the system without any. */
+  private List<String> nameServers = new ArrayList<>();
+}
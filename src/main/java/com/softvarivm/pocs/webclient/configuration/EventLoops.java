@@ -0,0 +1,74 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * The event loops the http server and the clients to the remote service run on, explicitly sized
+ * and named instead of the implicit, global, ones of reactor-netty. Server and clients get loops of
+ * their own, or share the same ones with the clients colocated: a connection opened from a thread
+ * of the loops is registered on that same thread.<br>
+ * The transport, native or NIO, is picked by reactor-netty among the ones that can be loaded,
+ * io_uring first, then epoll (or kqueue), falling back to NIO.
+ */
+public final class EventLoops {
+  private static final Logger LOG = LogManager.getLogger(EventLoops.class);
+
+  /** most time the threads of the loops are given to finish on disposal. */
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(1);
+
+  private final LoopResources server;
+  private final LoopResources client;
+  private final boolean preferNative;
+
+  public EventLoops(final TransportProperties props) {
+    preferNative = props.getType() == TransportProperties.Type.NATIVE;
+    server = create(props.getServer());
+    client = props.isShareLoops() ? server : create(props.getClient());
+    LOG.info(
+        "Event loops: {} transport, {} loops for server and clients",
+        server.onServer(preferNative).getClass().getSimpleName(),
+        props.isShareLoops() ? "shared" : "separate");
+  }
+
+  private static LoopResources create(final TransportProperties.Loops loops) {
+    final int threads =
+        loops.getThreads() > 0 ? loops.getThreads() : LoopResources.DEFAULT_IO_WORKER_COUNT;
+    // the server accepts connections on the worker threads, no dedicated selector thread
+    return LoopResources.create(loops.getName(), -1, threads, true, true);
+  }
+
+  /**
+   * @return the loops of the http server
+   */
+  public LoopResources server() {
+    return server;
+  }
+
+  /**
+   * @return the loops of the clients to the remote service, the same as the server's if shared
+   */
+  public LoopResources client() {
+    return client;
+  }
+
+  /**
+   * @return whether a native transport is used when it can be loaded
+   */
+  public boolean preferNative() {
+    return preferNative;
+  }
+
+  /**
+   * shuts the loops down without the quiet period netty waits by default for tasks to come in (2s
+   * per group): the server and the clients using them are already disposed of by then.
+   */
+  public void dispose() {
+    client.disposeLater(Duration.ZERO, SHUTDOWN_TIMEOUT).block();
+    if (server != client) {
+      server.disposeLater(Duration.ZERO, SHUTDOWN_TIMEOUT).block();
+    }
+  }
+}
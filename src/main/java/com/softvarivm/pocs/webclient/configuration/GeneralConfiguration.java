@@ -1,10 +1,15 @@
 package com.softvarivm.pocs.webclient.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.ReferenceCountedOpenSslContext;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 import javax.net.ssl.SSLException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -13,13 +18,34 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.netty.tcp.SslProvider;
 
 @Configuration
-@EnableConfigurationProperties
+@EnableConfigurationProperties({
+  ConnectionPoolProperties.class,
+  CacheProperties.class,
+  HedgingProperties.class,
+  RetryBudgetProperties.class,
+  RequestLogProperties.class,
+  BatchProperties.class,
+  Http2Properties.class,
+  TlsProperties.class,
+  DeadlineProperties.class,
+  AdmissionProperties.class,
+  ConcurrencyLimitProperties.class,
+  LoadBalancingProperties.class,
+  WarmupProperties.class,
+  DnsProperties.class
+})
 @ConfigurationProperties
 public class GeneralConfiguration {
+  private static final String OPENSSL_CLIENT_SESSION_CACHE =
+      "io.netty.handler.ssl.openssl.sessionCacheClient";
+
   @Value("${service.remote.baseUrl}")
   private String baseUrl;
 
@@ -31,15 +57,80 @@ public class GeneralConfiguration {
 
   public static final int TIMEOUT = 500;
 
+  static {
+    // netty does not keep the sessions of OpenSSL clients to resume them unless told to, and reads
+    // it once, before the first OpenSSL context is built
+    if (System.getProperty(OPENSSL_CLIENT_SESSION_CACHE) == null) {
+      System.setProperty(OPENSSL_CLIENT_SESSION_CACHE, "true");
+    }
+  }
+
+  /**
+   * Connection pool shared by both {@link WebClient} beans, instead of the global one used by
+   * {@code HttpClient.create()}, so that it can be sized and its usage observed.
+   *
+   * @param props the tuning of the pool
+   * @param http2 the HTTP/2 settings, which decide how many streams share a connection
+   * @return a {@link ConnectionProvider} disposed along with the application context
+   */
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider upstreamConnectionProvider(
+      final ConnectionPoolProperties props, final Http2Properties http2) {
+    final ConnectionProvider.Builder builder =
+        ConnectionProvider.builder(props.getName())
+            .maxConnections(props.getMaxConnections())
+            .pendingAcquireMaxCount(props.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(props.getPendingAcquireTimeout())
+            .maxIdleTime(props.getMaxIdleTime())
+            .maxLifeTime(props.getMaxLifeTime())
+            .evictInBackground(props.getEvictInBackground())
+            .metrics(props.isMetricsEnabled());
+    if (http2.isEnabled()) {
+      builder.allocationStrategy(
+          Http2AllocationStrategy.builder()
+              .maxConcurrentStreams(http2.getMaxConcurrentStreams())
+              .maxConnections(props.getMaxConnections())
+              .minConnections(1)
+              .build());
+    }
+    return switch (props.getLeasingStrategy()) {
+      case FIFO -> builder.fifo().build();
+      case LIFO -> builder.lifo().build();
+    };
+  }
+
+  /**
+   * Resolver of the hosts of the remote service shared by both {@link WebClient} beans, caching the
+   * answers itself instead of resolving them on every connection with the JDK.
+   *
+   * @param props the tuning of the resolver and its cache
+   * @param eventLoops the loops of the clients, one of which runs the resolver
+   * @param registry where the resolutions are metered
+   * @return a {@link CachingDnsResolver} closed along with the application context
+   */
+  @Bean(destroyMethod = "close")
+  public CachingDnsResolver upstreamDnsResolver(
+      final DnsProperties props, final EventLoops eventLoops, final MeterRegistry registry) {
+    return new CachingDnsResolver(props, eventLoops, registry);
+  }
+
   @Bean("webClientNoSsl")
-  public WebClient webClientWithTimeout() {
+  public WebClient webClientWithTimeout(
+      final ConnectionProvider upstreamConnectionProvider,
+      final Http2Properties http2,
+      final EventLoops eventLoops,
+      final CachingDnsResolver upstreamDnsResolver) {
     HttpClient httpClient =
-        HttpClient.create()
+        HttpClient.create(upstreamConnectionProvider)
+            .runOn(eventLoops.client(), eventLoops.preferNative())
+            .resolver(upstreamDnsResolver)
+            .protocol(cleartextProtocols(http2))
             .baseUrl(String.format("%s:%d", baseUrl, httpPort))
             .port(httpPort)
             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, TIMEOUT)
-            .doOnConnected(
-                conn -> conn.addHandlerLast(new ReadTimeoutHandler(TIMEOUT, TimeUnit.MILLISECONDS)))
+            // requests of StupidService set their own, from the time left to their deadline
+            .responseTimeout(Duration.ofMillis(TIMEOUT))
+            .metrics(true, GeneralConfiguration::uriTagValue)
         /*
         .wiretap(
             "reactor.netty.http.client.HttpClient",
@@ -48,19 +139,85 @@ public class GeneralConfiguration {
     return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
   }
 
+  /**
+   * TLS context of the connections to the remote service, built once and shared by all of them, so
+   * that they share its session cache too: new connections resume an earlier session, with its id
+   * or a session ticket, whichever the remote offers, instead of a full handshake. OpenSSL is used
+   * when {@code netty-tcnative} can be loaded, unless told otherwise.
+   *
+   * @param tls the TLS settings
+   * @param http2 the HTTP/2 settings, which decide the protocols offered with ALPN
+   * @return the client {@link SslContext}
+   * @throws SSLException if the context cannot be built
+   */
+  @Bean
+  public SslContext upstreamSslContext(final TlsProperties tls, final Http2Properties http2)
+      throws SSLException {
+    final SslContextBuilder builder =
+        SslContextBuilder.forClient()
+            .sslProvider(sslProvider(tls.getProvider()))
+            .trustManager(InsecureTrustManagerFactory.INSTANCE)
+            .sessionCacheSize(tls.getSessionCacheSize())
+            .sessionTimeout(tls.getSessionTimeout().toSeconds());
+    if (!tls.getProtocols().isEmpty()) {
+      builder.protocols(tls.getProtocols());
+    }
+    if (!tls.getCiphers().isEmpty()) {
+      builder.ciphers(tls.getCiphers());
+    }
+    if (http2.isEnabled()) {
+      builder.applicationProtocolConfig(
+          new ApplicationProtocolConfig(
+              ApplicationProtocolConfig.Protocol.ALPN,
+              ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+              ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+              ApplicationProtocolNames.HTTP_2,
+              ApplicationProtocolNames.HTTP_1_1));
+    }
+    return builder.build();
+  }
+
+  private static io.netty.handler.ssl.SslProvider sslProvider(final TlsProperties.Provider p) {
+    return switch (p) {
+      case AUTO -> OpenSsl.isAvailable()
+          ? io.netty.handler.ssl.SslProvider.OPENSSL
+          : io.netty.handler.ssl.SslProvider.JDK;
+      case OPENSSL -> {
+        if (!OpenSsl.isAvailable()) {
+          throw new IllegalStateException(
+              "OpenSSL TLS provider requested but unavailable", OpenSsl.unavailabilityCause());
+        }
+        yield io.netty.handler.ssl.SslProvider.OPENSSL;
+      }
+      case JDK -> io.netty.handler.ssl.SslProvider.JDK;
+    };
+  }
+
   @Bean("webClientSslTrustAllCerts")
-  public WebClient webClienSsltWithTimeout() throws SSLException {
-    var sslContext =
-        SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+  public WebClient webClienSsltWithTimeout(
+      final ConnectionProvider upstreamConnectionProvider,
+      final Http2Properties http2,
+      final SslContext upstreamSslContext,
+      final TlsHandshakeMetrics handshakeMetrics,
+      final EventLoops eventLoops,
+      final CachingDnsResolver upstreamDnsResolver) {
+    final String provider =
+        upstreamSslContext instanceof ReferenceCountedOpenSslContext ? "openssl" : "jdk";
     HttpClient httpClient =
-        HttpClient.create()
+        HttpClient.create(upstreamConnectionProvider)
+            .runOn(eventLoops.client(), eventLoops.preferNative())
+            .resolver(upstreamDnsResolver)
+            .protocol(secureProtocols(http2))
             .baseUrl(String.format("%s:%d", baseUrl, httpsPort))
             .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, TIMEOUT)
-            .doOnConnected(
-                conn -> conn.addHandlerLast(new ReadTimeoutHandler(TIMEOUT, TimeUnit.MILLISECONDS)))
+            // requests of StupidService set their own, from the time left to their deadline
+            .responseTimeout(Duration.ofMillis(TIMEOUT))
+            .metrics(true, GeneralConfiguration::uriTagValue)
+            .doOnChannelInit(
+                (observer, channel, address) -> handshakeMetrics.observe(channel, provider))
             .secure(
                 spec -> {
-                  SslProvider.Builder builder = spec.sslContext(sslContext);
+                  SslProvider.Builder builder = spec.sslContext(upstreamSslContext);
                 })
         /*
         .wiretap(
@@ -69,4 +226,29 @@ public class GeneralConfiguration {
             AdvancedByteBufFormat.TEXTUAL)*/ ;
     return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
   }
+
+  /** h2 and HTTP/1.1 offered with ALPN, or HTTP/1.1 only. */
+  private static HttpProtocol[] secureProtocols(final Http2Properties http2) {
+    return http2.isEnabled()
+        ? new HttpProtocol[] {HttpProtocol.H2, HttpProtocol.HTTP11}
+        : new HttpProtocol[] {HttpProtocol.HTTP11};
+  }
+
+  /** h2c with prior knowledge, HTTP/1.1 upgrading to h2c, or HTTP/1.1 only. */
+  private static HttpProtocol[] cleartextProtocols(final Http2Properties http2) {
+    if (!http2.isEnabled()) {
+      return new HttpProtocol[] {HttpProtocol.HTTP11};
+    }
+    return http2.isPriorKnowledge()
+        ? new HttpProtocol[] {HttpProtocol.H2C}
+        : new HttpProtocol[] {HttpProtocol.H2C, HttpProtocol.HTTP11};
+  }
+
+  /**
+   * reactor-netty tags its client metrics (connect, TLS handshake, time to first byte...) with the
+   * uri requested: the scenario is removed from it to keep the number of meters bounded.
+   */
+  private static String uriTagValue(final String uri) {
+    return uri.startsWith("/mock/") ? "/mock/{scenario}" : uri;
+  }
 }
@@ -0,0 +1,62 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Hedging of the requests sent to the remote service, see {@link
+ * com.softvarivm.pocs.webclient.service.RequestHedger}. Hedges are also bounded by the {@link
+ * RetryBudgetProperties retry budget}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.hedging")
+public class HedgingProperties {
+
+  /** policy of the scenarios not listed in {@link #scenarios}. */
+  private Policy defaults = new Policy();
+
+  /** per-scenario policies; a scenario listed here does not inherit anything from defaults. */
+  private Map<String, Policy> scenarios = new HashMap<>();
+
+  /** period over which the latency percentile of every scenario is recomputed. */
+  private Duration window = Duration.ofSeconds(10);
+
+  /** latencies a window must hold for its percentile to be trusted. */
+  private int minSamples = 20;
+
+  /** maximum number of scenarios whose latency is tracked. */
+  private int maxTrackedScenarios = 100;
+
+  /**
+   * @param scenario the scenario requested
+   * @return the policy applying to {@code scenario}
+   */
+  public Policy policyOf(final String scenario) {
+    return scenarios.getOrDefault(scenario, defaults);
+  }
+
+  @Getter
+  @Setter
+  public static class Policy {
+
+    /** whether a second request is sent when the first one is slow. */
+    private boolean enabled = false;
+
+    /** latency percentile, of the previous window, after which the hedge is sent. */
+    private double percentile = 95.0;
+
+    /** hedging delay while the latency percentile is unknown. */
+    private Duration delay = Duration.ofMillis(100);
+
+    /** lower bound of the hedging delay. */
+    private Duration minDelay = Duration.ofMillis(20);
+
+    /** upper bound of the hedging delay. */
+    private Duration maxDelay = Duration.ofMillis(400);
+  }
+}
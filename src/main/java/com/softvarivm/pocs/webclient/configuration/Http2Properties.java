@@ -0,0 +1,38 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * HTTP/2 to the remote service, for the {@link
+ * org.springframework.web.reactive.function.client.WebClient} beans declared in {@link
+ * GeneralConfiguration}. When enabled, requests are multiplexed as streams over a few connections
+ * instead of taking a connection each:
+ *
+ * <ul>
+ *   <li>over TLS, h2 is offered with ALPN next to HTTP/1.1, which is used if the remote does not
+ *       pick h2
+ *   <li>in cleartext, h2c is spoken right away with {@link #priorKnowledge}, which assumes the
+ *       remote speaks it; otherwise connections start as HTTP/1.1 and ask to upgrade to h2c,
+ *       staying HTTP/1.1 if the remote refuses
+ * </ul>
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.remote.http2")
+public class Http2Properties {
+
+  /** whether HTTP/2 is offered to the remote service, HTTP/1.1 only otherwise. */
+  private boolean enabled = false;
+
+  /**
+   * streams multiplexed over a connection before another one is opened, up to the {@link
+   * ConnectionPoolProperties#getMaxConnections() maximum connections} of the pool; the remote may
+   * allow fewer.
+   */
+  private int maxConcurrentStreams = 100;
+
+  /** whether cleartext connections speak h2c right away instead of upgrading from HTTP/1.1. */
+  private boolean priorKnowledge = true;
+}
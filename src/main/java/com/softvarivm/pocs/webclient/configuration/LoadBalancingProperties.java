@@ -0,0 +1,49 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Replicas of the remote service and how requests are spread over them, see {@link
+ * com.softvarivm.pocs.webclient.service.UpstreamBalancer}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.remote.balancing")
+public class LoadBalancingProperties {
+
+  public enum Strategy {
+    /** the replica with fewer requests waiting for an answer. */
+    LEAST_OUTSTANDING,
+    /** the replica with the lower average latency, weighted by its requests waiting. */
+    EWMA
+  }
+
+  /**
+   * base urls of the replicas, e.g. {@code https://replica-1:8443}; without any, {@code
+   * service.remote.baseUrl} on {@code service.remote.httpsPort} is the only one.
+   */
+  private List<String> endpoints = new ArrayList<>();
+
+  /** how the better of two replicas drawn at random is chosen for every request. */
+  private Strategy strategy = Strategy.EWMA;
+
+  /** time it takes for the average latency of a replica to forget a sample by about two thirds. */
+  private Duration ewmaDecay = Duration.ofSeconds(10);
+
+  /** failures in a row that eject a replica: 503, 504, timeouts and connection errors. */
+  private int consecutiveFailures = 5;
+
+  /** time a replica is ejected for the first time; it doubles every time it is ejected again. */
+  private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+  /** most time a replica is ejected for. */
+  private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+  /** most replicas ejected at once, as a percentage of them, so that some are always left. */
+  private int maxEjectedPercent = 50;
+}
@@ -0,0 +1,30 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Guards of the meters of the application. The scenario is taken from the path requested by the
+ * caller, so the number of scenario tags is capped: meters of any scenario beyond the cap are
+ * dropped, instead of letting the registry grow unbounded.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+  @Value("${service.metrics.maxScenarioTags:50}")
+  private int maxScenarioTags;
+
+  @Bean
+  public MeterFilter upstreamScenarioTagsLimit() {
+    return MeterFilter.maximumAllowableTags(
+        "upstream", "scenario", maxScenarioTags, MeterFilter.deny());
+  }
+
+  @Bean
+  public MeterFilter inboundScenarioTagsLimit() {
+    return MeterFilter.maximumAllowableTags(
+        "inbound", "scenario", maxScenarioTags, MeterFilter.deny());
+  }
+}
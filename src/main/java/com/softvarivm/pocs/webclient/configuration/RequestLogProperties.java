@@ -0,0 +1,27 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Sampling of the per-request logs, see {@link
+ * com.softvarivm.pocs.webclient.service.RequestLogSampler}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.logging")
+public class RequestLogProperties {
+
+  /** share of the requests whose summary is logged at INFO, 0 to log none. */
+  private double sampleRate = 0.01;
+
+  /** most requests per second logged at INFO, whatever the sample rate. */
+  private double maxPerSecond = 10.0;
+
+  /**
+   * most requests per second traced in full on their caller's request, 0 to trace none: beyond it
+   * the request is sampled as any other.
+   */
+  private double maxTracedPerSecond = 1.0;
+}
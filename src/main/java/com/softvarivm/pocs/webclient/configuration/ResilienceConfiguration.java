@@ -0,0 +1,88 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import com.softvarivm.pocs.webclient.service.ServiceException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeoutException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+/**
+ * Beans protecting the application from a misbehaving remote service.<br>
+ * The circuit breaker is metered by resilience4j ({@code resilience4j.circuitbreaker.state}, {@code
+ * resilience4j.circuitbreaker.calls}, {@code resilience4j.circuitbreaker.not.permitted.calls}...),
+ * and its state transitions are logged and counted in {@code upstream.circuitbreaker.transitions}.
+ */
+@Configuration
+@EnableConfigurationProperties(CircuitBreakerProperties.class)
+public class ResilienceConfiguration {
+  private static final Logger LOG = LogManager.getLogger(ResilienceConfiguration.class);
+
+  public static final String UPSTREAM = "upstream";
+
+  @Bean
+  public CircuitBreakerRegistry circuitBreakerRegistry(
+      final CircuitBreakerProperties props, final MeterRegistry meterRegistry) {
+    final CircuitBreakerConfig config =
+        CircuitBreakerConfig.custom()
+            .slidingWindowType(props.getSlidingWindowType())
+            .slidingWindowSize(props.getSlidingWindowSize())
+            .minimumNumberOfCalls(props.getMinimumNumberOfCalls())
+            .failureRateThreshold(props.getFailureRateThreshold())
+            .slowCallRateThreshold(props.getSlowCallRateThreshold())
+            .slowCallDurationThreshold(props.getSlowCallDurationThreshold())
+            .waitDurationInOpenState(props.getWaitDurationInOpenState())
+            .permittedNumberOfCallsInHalfOpenState(props.getPermittedNumberOfCallsInHalfOpenState())
+            .recordException(ResilienceConfiguration::isUpstreamFailure)
+            .build();
+    final CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+    TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+    return registry;
+  }
+
+  /**
+   * @param registry the registry the circuit breaker is created in
+   * @param meterRegistry where state transitions are counted
+   * @return the circuit breaker guarding the calls to the remote service
+   */
+  @Bean
+  public CircuitBreaker upstreamCircuitBreaker(
+      final CircuitBreakerRegistry registry, final MeterRegistry meterRegistry) {
+    final CircuitBreaker circuitBreaker = registry.circuitBreaker(UPSTREAM);
+    circuitBreaker
+        .getEventPublisher()
+        .onStateTransition(
+            event -> {
+              LOG.warn(
+                  "Circuit breaker '{}' transitioned {}",
+                  event.getCircuitBreakerName(),
+                  event.getStateTransition());
+              Counter.builder("upstream.circuitbreaker.transitions")
+                  .tag("name", event.getCircuitBreakerName())
+                  .tag("from", event.getStateTransition().getFromState().name())
+                  .tag("to", event.getStateTransition().getToState().name())
+                  .register(meterRegistry)
+                  .increment();
+            });
+    return circuitBreaker;
+  }
+
+  /**
+   * only failures telling the remote service is in trouble count for the circuit breaker: 4xx are
+   * the caller's fault, not the remote service's.
+   */
+  private static boolean isUpstreamFailure(final Throwable t) {
+    if (t instanceof ServiceException e) {
+      return e.getSc() >= 500;
+    }
+    return t instanceof WebClientRequestException || t instanceof TimeoutException;
+  }
+}
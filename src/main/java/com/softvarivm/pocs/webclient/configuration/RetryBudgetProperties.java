@@ -0,0 +1,25 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Budget shared by retries and hedges, see {@link
+ * com.softvarivm.pocs.webclient.service.RetryBudget}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.retry.budget")
+public class RetryBudgetProperties {
+
+  /** extra requests (retries and hedges) allowed, as a ratio of the requests of the window. */
+  private double ratio = 0.1;
+
+  /** extra requests per second allowed no matter the ratio, so that low traffic can retry. */
+  private int minPerSecond = 5;
+
+  /** rolling window the ratio is computed over. */
+  private Duration window = Duration.ofSeconds(10);
+}
@@ -0,0 +1,101 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.ssl.ReferenceCountedOpenSslEngine;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+import io.netty.internal.tcnative.SSL;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLEngine;
+import org.springframework.stereotype.Component;
+import reactor.netty.NettyPipeline;
+
+/**
+ * Times the TLS handshakes of the connections to the remote service in {@code
+ * upstream.tls.handshakes}, tagged with the TLS provider and the result: {@code full}, {@code
+ * resumed} (an earlier session was reused, skipping the key exchange) or {@code failed}. The count
+ * of each result gives the resumption ratio.<br>
+ * With OpenSSL, whether the session was resumed is asked to the native session. The JDK does not
+ * tell, but a session it resumes keeps the creation time of the original one, to the millisecond:
+ * the handshake is deemed resumed when its session was created before the connection started.
+ */
+@Component
+public class TlsHandshakeMetrics {
+
+  private final MeterRegistry registry;
+
+  public TlsHandshakeMetrics(final MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * starts observing the handshake of {@code channel}, to be called when it is initialized.
+   *
+   * @param channel a connection to the remote service
+   * @param provider name of the TLS provider of the connection
+   */
+  public void observe(final Channel channel, final String provider) {
+    if (channel.pipeline().get(NettyPipeline.SslHandler) != null) {
+      channel
+          .pipeline()
+          .addAfter(NettyPipeline.SslHandler, "tlsHandshakeMetrics", new Observer(provider));
+    }
+  }
+
+  private void record(final String provider, final String result, final long elapsedNanos) {
+    Timer.builder("upstream.tls.handshakes")
+        .description("TLS handshakes with the remote service")
+        .tag("provider", provider)
+        .tag("result", result)
+        .register(registry)
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private final class Observer extends ChannelInboundHandlerAdapter {
+    private final String provider;
+    private long startNanos;
+    private long startMillis;
+
+    Observer(final String provider) {
+      this.provider = provider;
+    }
+
+    @Override
+    public void channelActive(final ChannelHandlerContext ctx) throws Exception {
+      // the SslHandler before this one has just sent the first message of the handshake
+      startNanos = System.nanoTime();
+      startMillis = System.currentTimeMillis();
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt)
+        throws Exception {
+      if (evt instanceof SslHandshakeCompletionEvent completion) {
+        final long elapsed = System.nanoTime() - startNanos;
+        if (completion.isSuccess()) {
+          final SSLEngine engine = ctx.pipeline().get(SslHandler.class).engine();
+          record(provider, isResumed(engine) ? "resumed" : "full", elapsed);
+        } else {
+          record(provider, "failed", elapsed);
+        }
+        super.userEventTriggered(ctx, evt);
+        ctx.pipeline().remove(this);
+        return;
+      }
+      super.userEventTriggered(ctx, evt);
+    }
+
+    private boolean isResumed(final SSLEngine engine) {
+      if (engine instanceof ReferenceCountedOpenSslEngine openSsl) {
+        final long ssl = openSsl.sslPointer();
+        return ssl != 0L && SSL.isSessionReused(ssl);
+      }
+      return engine.getSession().getCreationTime() < startMillis;
+    }
+  }
+}
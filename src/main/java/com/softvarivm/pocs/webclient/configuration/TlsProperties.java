@@ -0,0 +1,45 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * TLS of the connections to the remote service, see {@link
+ * GeneralConfiguration#upstreamSslContext(TlsProperties, Http2Properties)}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.remote.tls")
+public class TlsProperties {
+
+  /** implementation of TLS. */
+  private Provider provider = Provider.AUTO;
+
+  /**
+   * sessions kept to resume TLS with the remote service instead of a full handshake, 0 for the
+   * default of the provider.
+   */
+  private long sessionCacheSize = 1000;
+
+  /** time a session can be resumed for, 0 for the default of the provider. */
+  private Duration sessionTimeout = Duration.ofHours(1);
+
+  /** protocols enabled, the defaults of the provider when empty. */
+  private List<String> protocols = new ArrayList<>(List.of("TLSv1.3", "TLSv1.2"));
+
+  /** cipher suites enabled, in order of preference, the defaults of the provider when empty. */
+  private List<String> ciphers = new ArrayList<>();
+
+  public enum Provider {
+    /** OpenSSL (BoringSSL through netty-tcnative) when it can be loaded, the JDK otherwise. */
+    AUTO,
+    /** OpenSSL, failing on startup if it cannot be loaded. */
+    OPENSSL,
+    /** the TLS implementation of the JDK. */
+    JDK
+  }
+}
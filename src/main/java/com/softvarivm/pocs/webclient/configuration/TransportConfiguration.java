@@ -0,0 +1,25 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs the http server on the {@link EventLoops} of the application; the clients declared in {@link
+ * GeneralConfiguration} run on them too.
+ */
+@Configuration
+@EnableConfigurationProperties(TransportProperties.class)
+public class TransportConfiguration {
+
+  @Bean(destroyMethod = "dispose")
+  public EventLoops eventLoops(final TransportProperties props) {
+    return new EventLoops(props);
+  }
+
+  @Bean
+  public NettyServerCustomizer eventLoopsServerCustomizer(final EventLoops eventLoops) {
+    return server -> server.runOn(eventLoops.server(), eventLoops.preferNative());
+  }
+}
@@ -0,0 +1,55 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Transport and event loops of the http server and of the {@link
+ * org.springframework.web.reactive.function.client.WebClient} beans, see {@link EventLoops}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.transport")
+public class TransportProperties {
+
+  /** I/O implementation of the server and of the clients. */
+  private Type type = Type.NATIVE;
+
+  /**
+   * whether the server and the clients run on the same event loops, with the {@link #server}
+   * settings: a connection to the remote service opened while handling a request is then served by
+   * the thread that handles the request, instead of handing the call over to another thread.
+   */
+  private boolean shareLoops = false;
+
+  /** event loops of the server. */
+  private Loops server = new Loops("server");
+
+  /** event loops of the clients, unless {@link #shareLoops}. */
+  private Loops client = new Loops("upstream");
+
+  public enum Type {
+    /** the native transport available: io_uring, epoll or kqueue, NIO if none can be loaded. */
+    NATIVE,
+    /** Java NIO, on every platform. */
+    NIO
+  }
+
+  @Getter
+  @Setter
+  public static class Loops {
+
+    /** prefix of the names of the threads. */
+    private String name;
+
+    /** threads handling I/O, 0 for as many as cores (at least 4). */
+    private int threads = 0;
+
+    public Loops() {}
+
+    Loops(final String name) {
+      this.name = name;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * What is done at startup before taking traffic, see {@link
+ * com.softvarivm.pocs.webclient.service.UpstreamWarmup}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "service.warmup")
+public class WarmupProperties {
+
+  /** whether the application warms up before being ready; when not, it is ready right away. */
+  private boolean enabled = true;
+
+  /** connections opened to every replica by each {@code WebClient}, TLS handshake included. */
+  private int connections = 4;
+
+  /** path requested to open the connections; whatever the answer, the connection is kept. */
+  private String path = "/";
+
+  /** scenarios requested through the whole pipeline of the service. */
+  private List<String> scenarios = new ArrayList<>(List.of("ok"));
+
+  /** times every scenario is requested. */
+  private int passes = 3;
+
+  /** the application is ready once this time is up, whether the warm-up is over or not. */
+  private Duration timeout = Duration.ofSeconds(10);
+}
@@ -1,16 +1,54 @@
 package com.softvarivm.pocs.webclient.controllers;
 
+import com.softvarivm.pocs.webclient.configuration.BatchProperties;
+import com.softvarivm.pocs.webclient.entities.BatchResult;
+import com.softvarivm.pocs.webclient.entities.ProblemDetails;
+import com.softvarivm.pocs.webclient.service.AdmissionControl;
+import com.softvarivm.pocs.webclient.service.AdmissionRejectedException;
+import com.softvarivm.pocs.webclient.service.Deadline;
+import com.softvarivm.pocs.webclient.service.Deadlines;
+import com.softvarivm.pocs.webclient.service.ProblemDetailsCache;
+import com.softvarivm.pocs.webclient.service.RequestLog;
+import com.softvarivm.pocs.webclient.service.RequestLogSampler;
 import com.softvarivm.pocs.webclient.service.StupidService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+/**
+ * Every request handled is timed in {@code inbound.requests}, tagged with the endpoint, the
+ * scenario and the signal the response ended with.<br>
+ * Requests are logged as decided by the {@link RequestLogSampler}; a single request can be traced
+ * in full with the {@value RequestLog#TRACE_HEADER} header, as long as few enough requests ask for
+ * it.<br>
+ * The time a caller waits can be given with the {@value Deadline#TIMEOUT_HEADER} header, otherwise
+ * the one configured for the scenario applies.<br>
+ * Requests for a single scenario go through {@link AdmissionControl} first: those shed are answered
+ * right away a {@link ProblemDetails} 503 or 429, with a {@code Retry-After} header.
+ */
 @RestController
 @RequestMapping("/test")
 @RequiredArgsConstructor
@@ -19,10 +57,178 @@ public class StupidController {
   private static final Logger LOG = LogManager.getLogger(StupidController.class);
 
   private final StupidService svc;
+  private final MeterRegistry meterRegistry;
+  private final RequestLogSampler requestLogSampler;
+  private final BatchProperties batchProperties;
+  private final Deadlines deadlines;
+  private final AdmissionControl admissionControl;
+  private final ProblemDetailsCache problems;
 
   @GetMapping(value = "/{scenario}", produces = MediaType.APPLICATION_JSON_VALUE)
-  public Mono<Object> getSomething(@PathVariable String scenario) {
-    LOG.info("Request received");
-    return svc.saySomething(scenario);
+  public Mono<Object> getSomething(
+      @PathVariable String scenario,
+      @RequestHeader(name = RequestLog.TRACE_HEADER, defaultValue = "false") boolean trace,
+      @RequestHeader(name = Deadline.TIMEOUT_HEADER, required = false) String timeout,
+      ServerHttpRequest request) {
+    final RequestLog log = requestLogSampler.sample(trace);
+    log.info(LOG, "Request received (scenario '{}')", scenario);
+    final Deadline deadline = deadlines.start(scenario, parseTimeout(timeout));
+    return timed(
+            "/test/{scenario}",
+            scenario,
+            admissionControl.admit(clientOf(request), svc.saySomething(scenario)))
+        .contextWrite(log::addTo)
+        .contextWrite(deadline::addTo);
+  }
+
+  /**
+   * same as {@link #getSomething(String, boolean, String, ServerHttpRequest)}, but the body of a
+   * successful response of the remote service is streamed as is to the caller, without being parsed
+   * and serialized again.
+   */
+  @GetMapping(value = "/{scenario}/raw")
+  public Mono<ResponseEntity<Flux<DataBuffer>>> relaySomething(
+      @PathVariable String scenario,
+      @RequestHeader(name = RequestLog.TRACE_HEADER, defaultValue = "false") boolean trace,
+      @RequestHeader(name = Deadline.TIMEOUT_HEADER, required = false) String timeout,
+      ServerHttpRequest request) {
+    final RequestLog log = requestLogSampler.sample(trace);
+    log.info(LOG, "Passthrough request received (scenario '{}')", scenario);
+    final Deadline deadline = deadlines.start(scenario, parseTimeout(timeout));
+    return timed(
+            "/test/{scenario}/raw",
+            scenario,
+            admissionControl.admit(clientOf(request), svc.passThrough(scenario)))
+        .contextWrite(log::addTo)
+        .contextWrite(deadline::addTo);
+  }
+
+  /**
+   * requests every scenario of a batch, at most {@code service.batch.concurrency} at a time, and
+   * streams each result, as NDJSON or server-sent events, as soon as it is available: results come
+   * in the order they complete, not in the order of the batch. The failure of a scenario is
+   * streamed as a {@link BatchResult} holding its {@link ProblemDetails}, and does not end the
+   * batch.<br>
+   * Every scenario is admitted on its own by the {@link AdmissionControl}, as the same number of
+   * single requests would be: one shed is streamed with the {@link ProblemDetails} of its
+   * rejection, so that a batch gets the caller no more than its rate, nor more than the in-flight
+   * limit.<br>
+   * No more scenarios are requested than the caller reads: results not read yet are held, at most
+   * {@code service.batch.concurrency} of them, until it asks for more.<br>
+   * The {@value Deadline#TIMEOUT_HEADER} header bounds the whole batch; without it, every scenario
+   * gets the time configured for it from the moment it is requested.
+   *
+   * @param scenarios the scenarios requested, e.g. {@code ["ok", "fail"]}
+   */
+  @PostMapping(
+      value = "/batch",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+  public Flux<BatchResult> getBatch(
+      @RequestBody List<String> scenarios,
+      @RequestHeader(name = RequestLog.TRACE_HEADER, defaultValue = "false") boolean trace,
+      @RequestHeader(name = Deadline.TIMEOUT_HEADER, required = false) String timeout,
+      ServerHttpRequest request) {
+    if (scenarios.isEmpty() || scenarios.size() > batchProperties.getMaxSize()) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST,
+          "A batch must hold between 1 and " + batchProperties.getMaxSize() + " scenarios");
+    }
+    final RequestLog log = requestLogSampler.sample(trace);
+    log.info(LOG, "Batch request received ({} scenarios)", scenarios.size());
+    final Duration requested = parseTimeout(timeout);
+    final String client = clientOf(request);
+    final Flux<BatchResult> results =
+        Flux.fromIterable(scenarios)
+            .flatMap(
+                scenario ->
+                    timed(
+                            "/test/batch",
+                            scenario,
+                            admissionControl.admit(client, svc.saySomething(scenario)))
+                        .map(result -> BatchResult.of(scenario, result))
+                        .defaultIfEmpty(new BatchResult(scenario, null, null))
+                        .onErrorResume(
+                            AdmissionRejectedException.class,
+                            e ->
+                                Mono.just(
+                                    new BatchResult(
+                                        scenario,
+                                        null,
+                                        problems
+                                            .get(
+                                                e.getSc(),
+                                                e.getMessage(),
+                                                request.getPath().value())
+                                            .problem()))),
+                batchProperties.getConcurrency(),
+                1)
+            .contextWrite(log::addTo);
+    if (requested == null) {
+      return results;
+    }
+    final Deadline deadline = deadlines.start(null, requested);
+    return results.contextWrite(deadline::addTo);
+  }
+
+  /**
+   * answers a request shed by the {@link AdmissionControl}.
+   *
+   * @return the {@link ProblemDetails} of the rejection, with the time to wait before trying again
+   */
+  @ExceptionHandler(AdmissionRejectedException.class)
+  public ResponseEntity<byte[]> rejected(
+      final AdmissionRejectedException e, final ServerHttpRequest request) {
+    final ProblemDetailsCache.Entry problem =
+        problems.get(e.getSc(), e.getMessage(), request.getPath().value());
+    return ResponseEntity.status(e.getSc())
+        .header(
+            HttpHeaders.RETRY_AFTER,
+            String.valueOf(Math.max(1L, (e.getRetryAfter().toMillis() + 999L) / 1000L)))
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(problem.json());
+  }
+
+  /**
+   * @return the client the rate of the request counts against, see {@link
+   *     AdmissionControl#clientOf}
+   */
+  private String clientOf(final ServerHttpRequest request) {
+    return admissionControl.clientOf(request.getHeaders(), request.getRemoteAddress());
+  }
+
+  /**
+   * @param timeout the value of the {@value Deadline#TIMEOUT_HEADER} header, if any
+   * @return the time the caller waits, {@code null} if not given
+   */
+  private static Duration parseTimeout(final String timeout) {
+    if (timeout == null) {
+      return null;
+    }
+    try {
+      final Duration parsed = DurationStyle.detectAndParse(timeout.trim(), ChronoUnit.MILLIS);
+      if (!parsed.isNegative()) {
+        return parsed;
+      }
+    } catch (IllegalArgumentException e) {
+      // reported below
+    }
+    throw new ResponseStatusException(
+        HttpStatus.BAD_REQUEST, "Invalid " + Deadline.TIMEOUT_HEADER + ": " + timeout);
+  }
+
+  private <T> Mono<T> timed(final String endpoint, final String scenario, final Mono<T> response) {
+    return Mono.defer(
+        () -> {
+          final Timer.Sample sample = Timer.start(meterRegistry);
+          return response.doFinally(
+              signalType ->
+                  sample.stop(
+                      Timer.builder("inbound.requests")
+                          .description("requests handled by the application")
+                          .tag("endpoint", endpoint)
+                          .tag("scenario", scenario)
+                          .tag("signal", signalType.name())
+                          .register(meterRegistry)));
+        });
   }
 }
@@ -0,0 +1,33 @@
+package com.softvarivm.pocs.webclient.entities;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Outcome of one scenario of a batch: either the body answered by the remote service, or the {@link
+ * ProblemDetails} of its failure.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResult {
+
+  private String scenario;
+
+  @JsonInclude(Include.NON_NULL)
+  private Object body;
+
+  @JsonInclude(Include.NON_NULL)
+  private ProblemDetails problem;
+
+  public static BatchResult of(final String scenario, final Object result) {
+    return result instanceof ProblemDetails p
+        ? new BatchResult(scenario, null, p)
+        : new BatchResult(scenario, result, null);
+  }
+}
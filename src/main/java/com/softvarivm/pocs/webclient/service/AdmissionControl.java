@@ -0,0 +1,161 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.RateLimiter;
+import com.softvarivm.pocs.webclient.configuration.AdmissionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sheds the requests the application cannot take, before any work is done for them, so that a slow
+ * remote service makes a few callers fail fast instead of every caller time out:
+ *
+ * <ul>
+ *   <li>no more than {@code service.admission.maxInFlight} requests are handled at once, the rest
+ *       are answered a {@code 503 SERVICE_UNAVAILABLE}
+ *   <li>a client sending more than {@code service.admission.perClientRate} requests per second is
+ *       answered a {@code 429 TOO_MANY_REQUESTS}
+ * </ul>
+ *
+ * Clients are named by the remote address of their connection. The {@code clientHeader} is only
+ * trusted from the {@code trustedProxies}, since any other caller could dodge its rate, and fill
+ * the rates tracked, by sending a new name with every request.<br>
+ * Both tell the caller how long to wait with an {@link AdmissionRejectedException}.<br>
+ * Admitted and shed requests are counted in {@code inbound.admission.admitted} and {@code
+ * inbound.admission.shed}, tagged with the reason; {@code inbound.admission.inflight} holds the
+ * admitted requests waiting for their answer.
+ */
+@Component
+public class AdmissionControl {
+
+  private final boolean enabled;
+  private final int maxInFlight;
+  private final String clientHeader;
+  private final Set<InetAddress> trustedProxies;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  // null when clients are not rate limited
+  private final LoadingCache<String, RateLimiter> limiters;
+
+  private final AdmissionRejectedException overloaded;
+  private final AdmissionRejectedException tooManyRequests;
+
+  private final Counter admitted;
+  private final Counter shedOverloaded;
+  private final Counter shedRateLimited;
+
+  public AdmissionControl(final AdmissionProperties props, final MeterRegistry registry) {
+    enabled = props.isEnabled();
+    maxInFlight = props.getMaxInFlight();
+    clientHeader = props.getClientHeader();
+    trustedProxies =
+        props.getTrustedProxies().stream()
+            .map(InetAddresses::forString)
+            .collect(Collectors.toUnmodifiableSet());
+    final double rate = props.getPerClientRate();
+    limiters =
+        rate > 0.0
+            ? CacheBuilder.newBuilder()
+                .maximumSize(props.getMaxClients())
+                .expireAfterAccess(props.getClientIdleTime())
+                .build(CacheLoader.from(client -> RateLimiter.create(rate)))
+            : null;
+    overloaded =
+        new AdmissionRejectedException(
+            "Too many requests in progress, try again later",
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            props.getRetryAfter());
+    tooManyRequests =
+        new AdmissionRejectedException(
+            "Request rate of the client exceeded, try again later",
+            HttpStatus.TOO_MANY_REQUESTS.value(),
+            // a permit is back in a second at most, or once the next one is due
+            rate > 0.0 && rate < 1.0
+                ? Duration.ofMillis((long) Math.ceil(1000.0 / rate))
+                : Duration.ofSeconds(1));
+
+    admitted =
+        Counter.builder("inbound.admission.admitted")
+            .description("requests admitted")
+            .register(registry);
+    shedOverloaded = shed(registry, "overloaded");
+    shedRateLimited = shed(registry, "rate_limited");
+    Gauge.builder("inbound.admission.inflight", inFlight, AtomicInteger::get)
+        .description("requests admitted waiting for their answer")
+        .register(registry);
+  }
+
+  private static Counter shed(final MeterRegistry registry, final String reason) {
+    return Counter.builder("inbound.admission.shed")
+        .description("requests shed before any work was done for them")
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  /**
+   * @param headers the headers of a request
+   * @param remote the remote address of the connection of the request, {@code null} if unknown
+   * @return the client the rate of the request counts against, {@code null} if unknown
+   */
+  public String clientOf(final HttpHeaders headers, final InetSocketAddress remote) {
+    if (remote == null) {
+      return null;
+    }
+    final InetAddress address = remote.getAddress();
+    if (address == null) {
+      return remote.getHostString();
+    }
+    if (trustedProxies.contains(address)) {
+      final String client = headers.getFirst(clientHeader);
+      if (client != null) {
+        return client;
+      }
+    }
+    return address.getHostAddress();
+  }
+
+  /**
+   * @param client the client sending the request, {@code null} if unknown
+   * @param request the work to do for the request
+   * @return {@code request}, or an {@link AdmissionRejectedException} without subscribing to it if
+   *     the request is shed
+   * @param <T> type of the answer
+   */
+  public <T> Mono<T> admit(final String client, final Mono<T> request) {
+    if (!enabled) {
+      return request;
+    }
+    return Mono.defer(
+        () -> {
+          if (client != null && limiters != null && !limiters.getUnchecked(client).tryAcquire()) {
+            shedRateLimited.increment();
+            return Mono.error(tooManyRequests);
+          }
+          if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            shedOverloaded.increment();
+            return Mono.error(overloaded);
+          }
+          admitted.increment();
+          return request.doFinally(signalType -> inFlight.decrementAndGet());
+        });
+  }
+
+  // VisibleForTesting
+  int getInFlight() {
+    return inFlight.get();
+  }
+}
@@ -0,0 +1,15 @@
+package com.softvarivm.pocs.webclient.service;
+
+import java.time.Duration;
+import lombok.Getter;
+
+/** a request was shed by the {@link AdmissionControl}, before any work was done for it. */
+public class AdmissionRejectedException extends ServiceException {
+  /** time the caller is told to wait before trying again. */
+  @Getter private final Duration retryAfter;
+
+  public AdmissionRejectedException(final String msg, final int status, final Duration wait) {
+    super(msg, status);
+    retryAfter = wait;
+  }
+}
@@ -0,0 +1,13 @@
+package com.softvarivm.pocs.webclient.service;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * no room was made in time for a call to the remote service within the limit, see {@link
+ * ConcurrencyLimiter}.
+ */
+public class ConcurrencyLimitExceededException extends ServiceException {
+  public ConcurrencyLimitExceededException(final String msg) {
+    super(msg, HttpStatus.SERVICE_UNAVAILABLE.value());
+  }
+}
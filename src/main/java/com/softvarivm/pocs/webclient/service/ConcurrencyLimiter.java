@@ -0,0 +1,342 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.softvarivm.pocs.webclient.configuration.ConcurrencyLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Limits the calls to the remote service in flight at once, adapting the limit to the latency
+ * observed, so that the throughput is the most the remote service can take without queuing, and
+ * without tipping it into overload:
+ *
+ * <ul>
+ *   <li>the latency of every call answered is compared with its long term average: while it stays
+ *       within {@code service.remote.concurrency.rttTolerance} of it the limit grows, by about its
+ *       square root, and when it goes beyond the limit shrinks in proportion (gradient)
+ *   <li>every call answered a 503 or a 504, or not answered at all, multiplies the limit by {@code
+ *       backoffRatio} (multiplicative decrease)
+ *   <li>the limit only grows when the calls in flight use at least half of it, so that it does not
+ *       drift up under low traffic
+ * </ul>
+ *
+ * The long term average moves by {@code 1/longWindow} of the difference on every call answered, so
+ * a rise in latency lasting about {@code longWindow} calls becomes the new normal: the limit
+ * shrinks on a sudden rise, and grows again once the remote service is steadily slower, e.g. after
+ * a deploy, instead of staying at its minimum.
+ *
+ * <p>Calls over the limit wait, at most {@code maxQueued} of them and no longer than {@code
+ * queueTimeout}, for a call to finish; past that they fail with a {@link
+ * ConcurrencyLimitExceededException}, without being sent. A call given room as its wait times out
+ * is sent: the room is never lost.<br>
+ * The limit, the calls in flight and waiting, and the latency estimates are published in {@code
+ * upstream.concurrency.*}.
+ */
+@Component
+public class ConcurrencyLimiter {
+  private static final Logger LOG = LogManager.getLogger(ConcurrencyLimiter.class);
+
+  private static final ConcurrencyLimitExceededException QUEUE_FULL =
+      new ConcurrencyLimitExceededException("Too many calls to the remote service waiting");
+  private static final ConcurrencyLimitExceededException QUEUE_TIMEOUT =
+      new ConcurrencyLimitExceededException("No room for a call to the remote service in time");
+
+  private enum Outcome {
+    // answered in time: its latency is a sample
+    SUCCESS,
+    // answered a 503 or a 504, or not answered
+    DROPPED,
+    // cancelled, or not sent
+    IGNORED
+  }
+
+  private final boolean enabled;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double rttTolerance;
+  private final double smoothing;
+  private final int longWindow;
+  private final double backoffRatio;
+  private final int maxQueued;
+  private final Duration queueTimeout;
+  private final LongSupplier nanoClock;
+
+  // guarded by this
+  private double limit;
+  private int inFlight;
+  private long shortRtt;
+  private double longRtt;
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+  private final Counter queueFull;
+  private final Counter queueTimedOut;
+
+  @Autowired
+  public ConcurrencyLimiter(final ConcurrencyLimitProperties props, final MeterRegistry registry) {
+    this(props, registry, System::nanoTime);
+  }
+
+  // VisibleForTesting
+  ConcurrencyLimiter(
+      final ConcurrencyLimitProperties props,
+      final MeterRegistry registry,
+      final LongSupplier clock) {
+    enabled = props.isEnabled();
+    minLimit = Math.max(1, props.getMinLimit());
+    maxLimit = Math.max(minLimit, props.getMaxLimit());
+    rttTolerance = Math.max(1.0, props.getRttTolerance());
+    smoothing = props.getSmoothing();
+    longWindow = Math.max(1, props.getLongWindow());
+    backoffRatio = props.getBackoffRatio();
+    maxQueued = props.getMaxQueued();
+    queueTimeout = props.getQueueTimeout();
+    nanoClock = clock;
+    limit = Math.min(maxLimit, Math.max(minLimit, props.getInitialLimit()));
+
+    Gauge.builder("upstream.concurrency.limit", this, ConcurrencyLimiter::getLimit)
+        .description("calls to the remote service allowed at once")
+        .register(registry);
+    Gauge.builder("upstream.concurrency.inflight", this, ConcurrencyLimiter::getInFlight)
+        .description("calls to the remote service in flight within the limit")
+        .register(registry);
+    Gauge.builder("upstream.concurrency.queued", this, ConcurrencyLimiter::getQueued)
+        .description("calls to the remote service waiting for room within the limit")
+        .register(registry);
+    rttGauge(registry, "short", ConcurrencyLimiter::getShortRtt);
+    rttGauge(registry, "long", ConcurrencyLimiter::getLongRtt);
+    queueFull = rejected(registry, "queue_full");
+    queueTimedOut = rejected(registry, "queue_timeout");
+  }
+
+  private void rttGauge(
+      final MeterRegistry registry,
+      final String estimate,
+      final ToDoubleFunction<ConcurrencyLimiter> rtt) {
+    TimeGauge.builder("upstream.concurrency.rtt", this, TimeUnit.NANOSECONDS, rtt)
+        .description("latency of the calls to the remote service the limit is computed from")
+        .tag("estimate", estimate)
+        .register(registry);
+  }
+
+  private static Counter rejected(final MeterRegistry registry, final String reason) {
+    return Counter.builder("upstream.concurrency.rejected")
+        .description("calls to the remote service not sent for lack of room within the limit")
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  /**
+   * @param call a call to the remote service
+   * @return {@code call}, subscribed once there is room for it within the limit, or a {@link
+   *     ConcurrencyLimitExceededException} if no room was made in time
+   * @param <T> type of the answer
+   */
+  public <T> Mono<T> limit(final Mono<T> call) {
+    if (!enabled) {
+      return call;
+    }
+    return acquire()
+        .flatMap(
+            permit ->
+                call.doFirst(permit::start)
+                    .doOnSuccess(answer -> permit.release(Outcome.SUCCESS))
+                    .doOnError(err -> permit.release(outcomeOf(err)))
+                    .doOnCancel(() -> permit.release(Outcome.IGNORED)));
+  }
+
+  private static Outcome outcomeOf(final Throwable err) {
+    if (err instanceof ServiceRetryErrException
+        || err instanceof WebClientRequestException
+        || err instanceof TimeoutException) {
+      return Outcome.DROPPED;
+    } else if (err instanceof ServiceException) {
+      // any other answer tells the latency of the remote service all the same
+      return Outcome.SUCCESS;
+    }
+    // e.g. the circuit is open: nothing was sent
+    return Outcome.IGNORED;
+  }
+
+  private Mono<Permit> acquire() {
+    return Mono.create(
+        sink -> {
+          final Waiter waiter = new Waiter(sink);
+          final boolean room;
+          synchronized (this) {
+            room = inFlight < (int) limit;
+            if (room) {
+              inFlight++;
+              waiter.granted = true;
+            } else if (waiters.size() < maxQueued) {
+              waiters.addLast(waiter);
+              // timed out here rather than by an operator downstream, which would drop a permit
+              // granted as it fires: granting and timing out are decided under the lock
+              sink.onDispose(
+                  Schedulers.parallel()
+                      .schedule(
+                          () -> timeOut(waiter), queueTimeout.toNanos(), TimeUnit.NANOSECONDS));
+            } else {
+              queueFull.increment();
+              sink.error(QUEUE_FULL);
+              return;
+            }
+            sink.onCancel(() -> cancel(waiter));
+          }
+          if (room) {
+            sink.success(new Permit());
+          }
+        });
+  }
+
+  /** a call waited for {@code queueTimeout}: it fails, unless it was given room meanwhile. */
+  private void timeOut(final Waiter waiter) {
+    synchronized (this) {
+      if (!waiters.remove(waiter)) {
+        // granted, or given up
+        return;
+      }
+    }
+    queueTimedOut.increment();
+    waiter.sink.error(QUEUE_TIMEOUT);
+  }
+
+  /** a call waiting gave up: it leaves the queue, or hands back the room it was just given. */
+  private void cancel(final Waiter waiter) {
+    final boolean wasGranted;
+    synchronized (this) {
+      wasGranted = waiter.granted;
+      if (wasGranted) {
+        inFlight--;
+      } else {
+        waiters.remove(waiter);
+      }
+    }
+    if (wasGranted) {
+      drain();
+    }
+  }
+
+  private void onRelease(final long rtt, final Outcome outcome) {
+    synchronized (this) {
+      final int inFlightAtRelease = inFlight;
+      inFlight--;
+      if (outcome == Outcome.DROPPED) {
+        limit = Math.max(minLimit, limit * backoffRatio);
+      } else if (outcome == Outcome.SUCCESS && rtt > 0L) {
+        updateLimit(rtt, inFlightAtRelease);
+      }
+    }
+    drain();
+  }
+
+  /** must be called holding the lock. */
+  private void updateLimit(final long rtt, final int inFlightAtRelease) {
+    shortRtt = rtt;
+    longRtt = longRtt == 0.0 ? rtt : longRtt + (rtt - longRtt) / longWindow;
+    if (longRtt > 2.0 * rtt) {
+      // the latency fell for good, e.g. after an episode of overload: catch up faster
+      longRtt *= 0.95;
+    }
+    if (inFlightAtRelease * 2 < limit) {
+      // not using the limit tells nothing about how much more the remote service can take
+      return;
+    }
+    final double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / rtt));
+    final double newLimit = limit * gradient + Math.sqrt(limit);
+    final double previous = limit;
+    limit =
+        Math.max(minLimit, Math.min(maxLimit, limit * (1.0 - smoothing) + newLimit * smoothing));
+    if ((int) limit != (int) previous) {
+      LOG.debug(
+          "Concurrency limit of the remote service {} -> {} (rtt {}us, long term {}us)",
+          (int) previous,
+          (int) limit,
+          TimeUnit.NANOSECONDS.toMicros(rtt),
+          (long) (longRtt / 1000.0));
+    }
+  }
+
+  /** gives the room left within the limit to the calls waiting, first come first served. */
+  private void drain() {
+    final List<Waiter> granted = new ArrayList<>();
+    synchronized (this) {
+      while (inFlight < (int) limit && !waiters.isEmpty()) {
+        final Waiter waiter = waiters.pollFirst();
+        waiter.granted = true;
+        inFlight++;
+        granted.add(waiter);
+      }
+    }
+    // outside the lock, since the calls are sent from here
+    for (final Waiter waiter : granted) {
+      waiter.sink.success(new Permit());
+    }
+  }
+
+  // VisibleForTesting
+  synchronized double getLimit() {
+    return limit;
+  }
+
+  // VisibleForTesting
+  synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  private synchronized int getQueued() {
+    return waiters.size();
+  }
+
+  private synchronized double getShortRtt() {
+    return shortRtt;
+  }
+
+  private synchronized double getLongRtt() {
+    return longRtt;
+  }
+
+  private static final class Waiter {
+    private final MonoSink<Permit> sink;
+    // guarded by the limiter
+    private boolean granted;
+
+    private Waiter(final MonoSink<Permit> sink) {
+      this.sink = sink;
+    }
+  }
+
+  /** room for a call within the limit, given back once, however the call ends. */
+  private final class Permit {
+    private final AtomicBoolean released = new AtomicBoolean();
+    private long start;
+
+    private void start() {
+      start = nanoClock.getAsLong();
+    }
+
+    private void release(final Outcome outcome) {
+      if (released.compareAndSet(false, true)) {
+        onRelease(start == 0L ? 0L : nanoClock.getAsLong() - start, outcome);
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.softvarivm.pocs.webclient.service;
+
+import java.time.Duration;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * The point in time by which a request must be answered, carried along the reactive sequence in its
+ * {@link Context} so that every attempt, retry and hedge knows the time left.
+ */
+public final class Deadline {
+
+  /**
+   * header giving the time the caller waits for an answer, as a duration ({@code 750ms}, {@code
+   * 2s}) or a number of milliseconds.
+   */
+  public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+  private static final Object KEY = Deadline.class;
+
+  private final long deadlineNanos;
+
+  private Deadline(final long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * @param timeout time allowed from now
+   * @return a deadline {@code timeout} from now
+   */
+  public static Deadline after(final Duration timeout) {
+    return new Deadline(System.nanoTime() + timeout.toNanos());
+  }
+
+  /**
+   * @param ctx the context of the request
+   * @return the deadline of the request, {@code null} if it was given none
+   */
+  static Deadline of(final ContextView ctx) {
+    return ctx.getOrDefault(KEY, null);
+  }
+
+  /**
+   * @param ctx the context of the request, see {@link reactor.core.publisher.Mono#contextWrite}
+   * @return {@code ctx} carrying this {@link Deadline}
+   */
+  public Context addTo(final Context ctx) {
+    return ctx.put(KEY, this);
+  }
+
+  /**
+   * @return the time left, zero once expired
+   */
+  public Duration remaining() {
+    return Duration.ofNanos(Math.max(0L, deadlineNanos - System.nanoTime()));
+  }
+
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0L;
+  }
+}
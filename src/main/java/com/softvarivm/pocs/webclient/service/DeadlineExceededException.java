@@ -0,0 +1,10 @@
+package com.softvarivm.pocs.webclient.service;
+
+import org.springframework.http.HttpStatus;
+
+/** the time the caller allowed ran out before the remote service could answer. */
+public class DeadlineExceededException extends ServiceException {
+  public DeadlineExceededException(final String msg) {
+    super(msg, HttpStatus.GATEWAY_TIMEOUT.value());
+  }
+}
@@ -0,0 +1,69 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.softvarivm.pocs.webclient.configuration.DeadlineProperties;
+import java.time.Duration;
+import org.springframework.stereotype.Component;
+import reactor.util.context.ContextView;
+
+/**
+ * Decides the {@link Deadline} of the requests: the time the caller asked for, capped, or the time
+ * configured for the scenario, and how the time left is split in attempts:
+ *
+ * <ul>
+ *   <li>an attempt waits for the remote service the time left, up to {@code attemptTimeout}
+ *   <li>a retry is only sent if, after its backoff, at least {@code minAttemptTime} is left
+ * </ul>
+ */
+@Component
+public class Deadlines {
+
+  private final DeadlineProperties props;
+
+  public Deadlines(final DeadlineProperties props) {
+    this.props = props;
+  }
+
+  /**
+   * @param scenario the scenario requested, only needed without {@code requested}
+   * @param requested the time the caller asked for, {@code null} for the one of the scenario
+   * @return the deadline of a request received now
+   */
+  public Deadline start(final String scenario, final Duration requested) {
+    if (requested == null) {
+      return Deadline.after(props.timeoutOf(scenario));
+    }
+    return Deadline.after(
+        requested.compareTo(props.getMaxTimeout()) > 0 ? props.getMaxTimeout() : requested);
+  }
+
+  /**
+   * @param ctx the context of the request
+   * @param scenario the scenario requested
+   * @return the deadline carried by {@code ctx}, or one starting now for {@code scenario}
+   */
+  Deadline of(final ContextView ctx, final String scenario) {
+    final Deadline deadline = Deadline.of(ctx);
+    return deadline != null ? deadline : start(scenario, null);
+  }
+
+  /**
+   * @return time an attempt may wait for the remote service
+   */
+  Duration attemptTimeout(final Deadline deadline) {
+    final Duration remaining = deadline.remaining();
+    if (remaining.compareTo(props.getAttemptTimeout()) >= 0) {
+      return props.getAttemptTimeout();
+    }
+    // a zero timeout would mean no timeout at all
+    return remaining.isZero() ? Duration.ofMillis(1L) : remaining;
+  }
+
+  /**
+   * @param deadline deadline of the request
+   * @param backoff expected wait before the retry
+   * @return whether a retry sent after {@code backoff} has time to be answered
+   */
+  boolean allowsRetry(final Deadline deadline, final Duration backoff) {
+    return deadline.remaining().compareTo(backoff.plus(props.getMinAttemptTime())) >= 0;
+  }
+}
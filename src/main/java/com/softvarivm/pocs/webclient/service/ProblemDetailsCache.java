@@ -0,0 +1,64 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.softvarivm.pocs.webclient.entities.ProblemDetails;
+import java.util.concurrent.ExecutionException;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link ProblemDetails} handed over to the callers, built and serialized once per status, cause
+ * and instance, instead of once per failure: the error path gets cheap when the remote service
+ * fails at high rate, which is when it matters.<br>
+ * The instances returned are shared, and must not be modified.
+ */
+@Component
+public class ProblemDetailsCache {
+
+  static final String TITLE =
+      "Problem accessing/updating remote resources hosted in Wiremock cloud";
+  static final String DETAIL = "WireMock was told to fail in this case: you got what you mocked";
+
+  // causes come from exception messages and instances from the scenarios requested
+  private static final long MAXIMUM_SIZE = 1000L;
+
+  /** a {@link ProblemDetails} and its json. */
+  public record Entry(ProblemDetails problem, byte[] json) {}
+
+  private record Key(int status, String cause, String instance) {}
+
+  private final ObjectMapper objectMapper;
+  private final Cache<Key, Entry> entries =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+  public ProblemDetailsCache(final ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * @param status status of the problem
+   * @param cause cause of the problem, if known
+   * @param instance the resource requested
+   * @return the {@link ProblemDetails} and its json
+   */
+  public Entry get(final int status, final String cause, final String instance) {
+    try {
+      return entries.get(new Key(status, cause, instance), () -> build(status, cause, instance));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("ProblemDetails cannot be serialized", e.getCause());
+    }
+  }
+
+  private Entry build(final int status, final String cause, final String instance)
+      throws JsonProcessingException {
+    final ProblemDetails p = new ProblemDetails();
+    p.setTitle(TITLE);
+    p.setInstance(instance);
+    p.setStatus(status);
+    p.setCause(cause);
+    p.setDetail(DETAIL);
+    return new Entry(p, objectMapper.writeValueAsBytes(p));
+  }
+}
@@ -0,0 +1,167 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.softvarivm.pocs.webclient.configuration.HedgingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Hedges the requests sent to the remote service to cut tail latency: when no answer arrives within
+ * a delay, a second, identical, request is sent and whichever answers first wins, the other one
+ * being cancelled. A request failing does not cancel the other one: the call only fails once both
+ * have, or when the first one fails before any hedge is sent.<br>
+ * The delay is the latency percentile of the scenario observed in the previous window, bounded by
+ * the policy of the scenario (see {@link HedgingProperties}). Hedges are only sent when the {@link
+ * RetryBudget} allows it, so that they cannot amplify an outage.<br>
+ * Hedges sent and won are counted in {@code upstream.hedges.sent} and {@code upstream.hedges.won},
+ * tagged with the scenario.
+ */
+@Component
+public class RequestHedger {
+  private static final Logger LOG = LogManager.getLogger(RequestHedger.class);
+
+  private final HedgingProperties props;
+  private final RetryBudget retryBudget;
+  private final MeterRegistry registry;
+  private final Cache<String, LatencyTracker> trackers;
+
+  public RequestHedger(
+      final HedgingProperties props, final RetryBudget budget, final MeterRegistry registry) {
+    this.props = props;
+    this.retryBudget = budget;
+    this.registry = registry;
+    trackers = CacheBuilder.newBuilder().maximumSize(props.getMaxTrackedScenarios()).build();
+  }
+
+  /**
+   * @param scenario the scenario the request belongs to
+   * @param attempt the request to the remote service; every subscription sends a new one
+   * @return a {@link Mono} subscribing to {@code attempt} and, if it is slow, subscribing again
+   * @param <T> type of the answer
+   */
+  public <T> Mono<T> hedge(final String scenario, final Mono<T> attempt) {
+    final HedgingProperties.Policy policy = props.policyOf(scenario);
+    final LatencyTracker tracker = tracker(scenario);
+    final Mono<T> timedAttempt = tracker.timed(attempt);
+    if (!policy.isEnabled()) {
+      return timedAttempt;
+    }
+    return Mono.deferContextual(
+        ctx -> {
+          final Duration delay = tracker.hedgingDelay(policy);
+          final AtomicReference<Throwable> firstError = new AtomicReference<>();
+          final Sinks.Empty<Void> primaryFailed = Sinks.empty();
+          final Mono<Tuple2<T, Boolean>> primary =
+              timedAttempt
+                  .map(answer -> Tuples.of(answer, false))
+                  .doOnError(
+                      e -> {
+                        firstError.compareAndSet(null, e);
+                        primaryFailed.tryEmitEmpty();
+                      });
+          final Mono<Tuple2<T, Boolean>> hedge =
+              Mono.delay(delay)
+                  // a request failing that fast would not be helped by a copy
+                  .takeUntilOther(primaryFailed.asMono())
+                  .flatMap(
+                      tick -> {
+                        if (!retryBudget.tryAcquire(RetryBudget.Kind.HEDGE)) {
+                          // let the first request finish on its own
+                          return Mono.empty();
+                        }
+                        RequestLog.of(ctx)
+                            .info(
+                                LOG,
+                                "No answer after {} ms, hedging scenario '{}'",
+                                delay.toMillis(),
+                                scenario);
+                        counter("upstream.hedges.sent", scenario).increment();
+                        return timedAttempt
+                            .map(answer -> Tuples.of(answer, true))
+                            .doOnError(e -> firstError.compareAndSet(null, e));
+                      });
+          return Mono.firstWithValue(primary, hedge)
+              // none answered: the first error is that of the call, not reactor's own
+              .onErrorMap(e -> firstError.get() != null ? firstError.get() : e)
+              .map(
+                  winner -> {
+                    if (winner.getT2()) {
+                      counter("upstream.hedges.won", scenario).increment();
+                    }
+                    return winner.getT1();
+                  });
+        });
+  }
+
+  private Counter counter(final String name, final String scenario) {
+    return Counter.builder(name).tag("scenario", scenario).register(registry);
+  }
+
+  private LatencyTracker tracker(final String scenario) {
+    try {
+      return trackers.get(scenario, () -> new LatencyTracker(props));
+    } catch (ExecutionException e) {
+      // the loader does not throw
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** latency of the successful attempts of a scenario, over consecutive windows. */
+  private static final class LatencyTracker {
+    private final Recorder recorder = new Recorder(2);
+    private final long windowNanos;
+    private final int minSamples;
+    private final AtomicLong nextRotation;
+    // latency percentile of the previous window, -1 if unknown
+    private volatile long percentileMicros = -1L;
+
+    LatencyTracker(final HedgingProperties props) {
+      windowNanos = props.getWindow().toNanos();
+      minSamples = props.getMinSamples();
+      nextRotation = new AtomicLong(System.nanoTime() + windowNanos);
+    }
+
+    <T> Mono<T> timed(final Mono<T> attempt) {
+      return Mono.defer(
+          () -> {
+            final long start = System.nanoTime();
+            return attempt.doOnSuccess(
+                answer ->
+                    recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+          });
+    }
+
+    Duration hedgingDelay(final HedgingProperties.Policy policy) {
+      final long now = System.nanoTime();
+      final long rotation = nextRotation.get();
+      if (now - rotation >= 0 && nextRotation.compareAndSet(rotation, now + windowNanos)) {
+        final Histogram window = recorder.getIntervalHistogram();
+        percentileMicros =
+            window.getTotalCount() >= minSamples
+                ? window.getValueAtPercentile(policy.getPercentile())
+                : -1L;
+      }
+      final long micros = percentileMicros;
+      final Duration delay = micros >= 0 ? Duration.ofNanos(micros * 1_000L) : policy.getDelay();
+      if (delay.compareTo(policy.getMinDelay()) < 0) {
+        return policy.getMinDelay();
+      }
+      return delay.compareTo(policy.getMaxDelay()) > 0 ? policy.getMaxDelay() : delay;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.softvarivm.pocs.webclient.service;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Supplier;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * How the lines logged on behalf of a request are written, carried along the reactive sequence in
+ * its {@link Context}:
+ *
+ * <ul>
+ *   <li>{@link Mode#UNSAMPLED}: summary lines at DEBUG and details at TRACE, so that nothing is
+ *       written with the default levels
+ *   <li>{@link Mode#SAMPLED}: summary lines at INFO and details at DEBUG
+ *   <li>{@link Mode#TRACED}: everything at INFO, to follow a single call without changing levels
+ * </ul>
+ *
+ * Parameters are only formatted when the line is written; details, such as bodies, are given as
+ * {@link Supplier}s so that they are not even turned into a string otherwise.
+ */
+public final class RequestLog {
+
+  /** header asking for a request to be {@link Mode#TRACED}, e.g. {@code X-Trace-Request: true}. */
+  public static final String TRACE_HEADER = "X-Trace-Request";
+
+  public enum Mode {
+    UNSAMPLED(Level.DEBUG, Level.TRACE),
+    SAMPLED(Level.INFO, Level.DEBUG),
+    TRACED(Level.INFO, Level.INFO);
+
+    private final Level summary;
+    private final Level detail;
+
+    Mode(final Level summary, final Level detail) {
+      this.summary = summary;
+      this.detail = detail;
+    }
+  }
+
+  public static final RequestLog UNSAMPLED = new RequestLog(Mode.UNSAMPLED);
+  public static final RequestLog SAMPLED = new RequestLog(Mode.SAMPLED);
+  public static final RequestLog TRACED = new RequestLog(Mode.TRACED);
+
+  private static final Object KEY = RequestLog.class;
+
+  private final Mode mode;
+
+  private RequestLog(final Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * @param ctx the context of the request
+   * @return the {@link RequestLog} of the request, {@link #UNSAMPLED} if it was given none
+   */
+  public static RequestLog of(final ContextView ctx) {
+    return ctx.getOrDefault(KEY, UNSAMPLED);
+  }
+
+  /**
+   * @param ctx the context of the request, see {@link reactor.core.publisher.Mono#contextWrite}
+   * @return {@code ctx} carrying this {@link RequestLog}
+   */
+  public Context addTo(final Context ctx) {
+    return ctx.put(KEY, this);
+  }
+
+  public Mode mode() {
+    return mode;
+  }
+
+  /** logs a summary line of the request. */
+  public void info(final Logger logger, final String message, final Object p0) {
+    logger.log(mode.summary, message, p0);
+  }
+
+  /** logs a summary line of the request. */
+  public void info(final Logger logger, final String message, final Object p0, final Object p1) {
+    logger.log(mode.summary, message, p0, p1);
+  }
+
+  /** logs a detail of the request, whose parameter is only computed when it is written. */
+  public void detail(final Logger logger, final String message, final Supplier<?> p0) {
+    if (logger.isEnabled(mode.detail)) {
+      logger.log(mode.detail, message, p0.get());
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.softvarivm.pocs.webclient.configuration.RequestLogProperties;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which requests get their summary logged at INFO: a random share of them, and no more than
+ * a number per second, so that the logs written do not grow with the traffic. Requests asking to be
+ * traced are logged in full, up to a number per second as well: the header asking for it comes from
+ * any caller.
+ */
+@Component
+public class RequestLogSampler {
+
+  private final double sampleRate;
+  // null when no request is to be sampled
+  private final RateLimiter limiter;
+  // null when no request is to be traced
+  private final RateLimiter tracedLimiter;
+
+  public RequestLogSampler(final RequestLogProperties props) {
+    sampleRate = props.getSampleRate();
+    limiter =
+        sampleRate > 0.0 && props.getMaxPerSecond() > 0.0
+            ? RateLimiter.create(props.getMaxPerSecond())
+            : null;
+    tracedLimiter =
+        props.getMaxTracedPerSecond() > 0.0
+            ? RateLimiter.create(props.getMaxTracedPerSecond())
+            : null;
+  }
+
+  /**
+   * @param traceRequested whether the caller asked for the request to be traced
+   * @return how the lines of the request are to be logged
+   */
+  public RequestLog sample(final boolean traceRequested) {
+    if (traceRequested && tracedLimiter != null && tracedLimiter.tryAcquire()) {
+      return RequestLog.TRACED;
+    }
+    // the random draw first, so that the limiter is only contended by the sampled requests
+    if (limiter != null
+        && ThreadLocalRandom.current().nextDouble() < sampleRate
+        && limiter.tryAcquire()) {
+      return RequestLog.SAMPLED;
+    }
+    return RequestLog.UNSAMPLED;
+  }
+}
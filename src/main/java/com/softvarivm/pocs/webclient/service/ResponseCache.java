@@ -0,0 +1,251 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.softvarivm.pocs.webclient.configuration.CacheProperties;
+import java.time.Duration;
+import java.util.Locale;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-memory cache of the successful responses sent by the remote service, keyed by the URI
+ * they were fetched from. It behaves as a shared HTTP cache:
+ *
+ * <ul>
+ *   <li>a response is fresh for the {@code s-maxage}/{@code max-age} announced by the upstream, or
+ *       {@link CacheProperties#getTtl()} when none is announced, capped by {@link
+ *       CacheProperties#getMaxTtl()}
+ *   <li>{@code no-store} and {@code private} responses are never kept, {@code no-cache} ones are
+ *       kept but always revalidated
+ *   <li>stale responses are revalidated with {@code If-None-Match}/{@code If-Modified-Since}, so
+ *       that the upstream may answer a cheap {@code 304 NOT_MODIFIED}
+ *   <li>while the upstream is failing, a stale response can still be served for a while
+ *       (stale-if-error)
+ * </ul>
+ */
+@Component
+public class ResponseCache {
+  private static final Logger LOG = LogManager.getLogger(ResponseCache.class);
+
+  private final CacheProperties props;
+  private final Ticker ticker;
+  private final Cache<String, CachedResponse> cache;
+
+  @Autowired
+  public ResponseCache(final CacheProperties props) {
+    this(props, Ticker.systemTicker());
+  }
+
+  // VisibleForTesting
+  ResponseCache(final CacheProperties props, final Ticker ticker) {
+    this.props = props;
+    this.ticker = ticker;
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(props.getMaximumSize())
+            .expireAfterWrite(props.getMaxTtl().plus(props.getStaleIfError()))
+            .ticker(ticker)
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * @param uri the upstream URI
+   * @return the response cached for {@code uri}, no matter it is fresh or stale, or {@code null} if
+   *     there is none
+   */
+  CachedResponse lookup(final String uri) {
+    return props.isEnabled() ? cache.getIfPresent(uri) : null;
+  }
+
+  /**
+   * @param cached a response returned by {@link #lookup(String)}, may be {@code null}
+   * @return whether {@code cached} can be served without asking the upstream
+   */
+  boolean isFresh(final CachedResponse cached) {
+    return cached != null && cached.isFresh(ticker.read());
+  }
+
+  /**
+   * @param uri the upstream URI
+   * @return the response cached for {@code uri} if it can still be served while the upstream is
+   *     failing, {@code null} otherwise
+   */
+  CachedResponse lookupStaleIfError(final String uri) {
+    final CachedResponse cached = lookup(uri);
+    return cached != null && cached.isUsableOnError(ticker.read()) ? cached : null;
+  }
+
+  /**
+   * add the validators of a stale response to the request revalidating it.
+   *
+   * @param headers the headers of the request sent upstream
+   * @param cached the stale response, may be {@code null}
+   */
+  void addConditionalHeaders(final HttpHeaders headers, final CachedResponse cached) {
+    if (cached == null) {
+      return;
+    }
+    if (cached.etag() != null) {
+      headers.setIfNoneMatch(cached.etag());
+    }
+    if (cached.lastModified() > 0) {
+      headers.setIfModifiedSince(cached.lastModified());
+    }
+  }
+
+  /**
+   * update the cache with a response received from the upstream.
+   *
+   * @param uri the upstream URI
+   * @param previous the stale response that was revalidated, may be {@code null}
+   * @param entity the response received
+   * @param log how the request that received the response logs
+   * @return the body to hand over to the caller: the cached one if the upstream answered {@code 304
+   *     NOT_MODIFIED}, the received one otherwise
+   */
+  Object onResponse(
+      final String uri,
+      final CachedResponse previous,
+      final ResponseEntity<Object> entity,
+      final RequestLog log) {
+    final HttpHeaders headers = entity.getHeaders();
+    if (entity.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) && previous != null) {
+      log.info(LOG, "Cached response for {} revalidated", uri);
+      store(
+          uri,
+          previous.body(),
+          headers.getETag() != null ? headers.getETag() : previous.etag(),
+          headers.getLastModified() > 0 ? headers.getLastModified() : previous.lastModified(),
+          headers);
+      return previous.body();
+    }
+    if (props.isEnabled() && entity.getStatusCode().is2xxSuccessful()) {
+      store(uri, entity.getBody(), headers.getETag(), headers.getLastModified(), headers);
+    }
+    return entity.getBody();
+  }
+
+  /**
+   * @param uri the upstream URI, whose cached response, if any, is dropped
+   */
+  void invalidate(final String uri) {
+    cache.invalidate(uri);
+  }
+
+  private void store(
+      final String uri,
+      final Object body,
+      final String etag,
+      final long lastModified,
+      final HttpHeaders headers) {
+    final Directives directives = Directives.parse(headers.getCacheControl());
+    if (directives.noStore()) {
+      cache.invalidate(uri);
+      return;
+    }
+    final Duration freshFor;
+    if (directives.noCache()) {
+      freshFor = Duration.ZERO;
+    } else {
+      freshFor =
+          min(
+              directives.maxAge() != null ? directives.maxAge() : props.getTtl(),
+              props.getMaxTtl());
+    }
+    final Duration staleIfError =
+        directives.staleIfError() != null
+            ? min(directives.staleIfError(), props.getStaleIfError())
+            : props.getStaleIfError();
+    final long now = ticker.read();
+    cache.put(
+        uri,
+        new CachedResponse(
+            body,
+            etag,
+            lastModified,
+            now + freshFor.toNanos(),
+            now + freshFor.plus(staleIfError).toNanos()));
+  }
+
+  private static Duration min(final Duration a, final Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
+  // VisibleForTesting
+  long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+
+  /**
+   * a response kept in the cache.
+   *
+   * @param body the body of the response, {@code null} if it had none
+   * @param etag the {@code ETag} validator, may be {@code null}
+   * @param lastModified the {@code Last-Modified} validator in epoch millis, or -1
+   * @param freshUntil {@link Ticker} reading until which the response is fresh
+   * @param usableOnErrorUntil {@link Ticker} reading until which the response can be served while
+   *     the upstream is failing
+   */
+  record CachedResponse(
+      Object body, String etag, long lastModified, long freshUntil, long usableOnErrorUntil) {
+
+    boolean isFresh(final long now) {
+      return now - freshUntil < 0;
+    }
+
+    boolean isUsableOnError(final long now) {
+      return now - usableOnErrorUntil < 0;
+    }
+  }
+
+  /** the subset of {@code Cache-Control} directives a shared cache cares about. */
+  private record Directives(
+      boolean noStore, boolean noCache, Duration maxAge, Duration staleIfError) {
+
+    private static final Directives NONE = new Directives(false, false, null, null);
+
+    static Directives parse(final String cacheControl) {
+      if (cacheControl == null || cacheControl.isBlank()) {
+        return NONE;
+      }
+      boolean noStore = false;
+      boolean noCache = false;
+      Duration maxAge = null;
+      Duration sharedMaxAge = null;
+      Duration staleIfError = null;
+      for (final String directive : cacheControl.split(",")) {
+        final String[] kv = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+        final String value = kv.length > 1 ? kv[1].replace("\"", "").trim() : null;
+        switch (kv[0]) {
+          case "no-store", "private" -> noStore = true;
+          case "no-cache" -> noCache = true;
+          case "max-age" -> maxAge = seconds(value);
+          case "s-maxage" -> sharedMaxAge = seconds(value);
+          case "stale-if-error" -> staleIfError = seconds(value);
+          default -> {
+            // not relevant for this cache
+          }
+        }
+      }
+      return new Directives(
+          noStore, noCache, sharedMaxAge != null ? sharedMaxAge : maxAge, staleIfError);
+    }
+
+    private static Duration seconds(final String value) {
+      try {
+        return value == null ? null : Duration.ofSeconds(Math.max(0L, Long.parseLong(value)));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+}
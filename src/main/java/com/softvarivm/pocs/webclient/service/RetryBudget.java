@@ -0,0 +1,121 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.softvarivm.pocs.webclient.configuration.RetryBudgetProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caps the extra load that retries and hedges put on the remote service to a ratio of the requests
+ * sent over a rolling window, so that they cannot amplify an outage. A minimum number of extra
+ * requests per second is always allowed, so that retries keep working under low traffic.<br>
+ * Every instance of the application keeps its own budget: since each of them is bounded by the
+ * ratio, so is the whole cluster.<br>
+ * Spent and rejected extra requests are counted in {@code upstream.retrybudget.spent} and {@code
+ * upstream.retrybudget.rejected}, tagged with their kind.
+ */
+@Component
+public class RetryBudget {
+
+  public enum Kind {
+    RETRY,
+    HEDGE
+  }
+
+  private final double ratio;
+  private final long minExtra;
+  private final LongSupplier nanoClock;
+
+  // one bucket per second of the window, guarded by this
+  private final long[] stamps;
+  private final long[] requests;
+  private final long[] extras;
+
+  private final Map<Kind, Counter> spent = new EnumMap<>(Kind.class);
+  private final Map<Kind, Counter> rejected = new EnumMap<>(Kind.class);
+
+  @Autowired
+  public RetryBudget(final RetryBudgetProperties props, final MeterRegistry registry) {
+    this(props, registry, System::nanoTime);
+  }
+
+  // VisibleForTesting
+  RetryBudget(
+      final RetryBudgetProperties props, final MeterRegistry registry, final LongSupplier clock) {
+    final int seconds = (int) Math.max(1L, props.getWindow().toSeconds());
+    ratio = props.getRatio();
+    minExtra = (long) props.getMinPerSecond() * seconds;
+    nanoClock = clock;
+    stamps = new long[seconds];
+    requests = new long[seconds];
+    extras = new long[seconds];
+    for (final Kind kind : Kind.values()) {
+      spent.put(kind, counter(registry, "upstream.retrybudget.spent", kind));
+      rejected.put(kind, counter(registry, "upstream.retrybudget.rejected", kind));
+    }
+  }
+
+  private static Counter counter(final MeterRegistry registry, final String name, final Kind kind) {
+    return Counter.builder(name)
+        .tag("kind", kind.name().toLowerCase(Locale.ROOT))
+        .register(registry);
+  }
+
+  /** deposit in the budget: a request, not a retry nor a hedge, is about to be sent. */
+  public void onRequest() {
+    synchronized (this) {
+      requests[bucket()]++;
+    }
+  }
+
+  /**
+   * withdraw from the budget.
+   *
+   * @param kind what the extra request is
+   * @return {@code true} if the extra request can be sent, {@code false} if the budget is exhausted
+   */
+  public boolean tryAcquire(final Kind kind) {
+    final boolean acquired;
+    synchronized (this) {
+      final int current = bucket();
+      long requestsInWindow = 0;
+      long extrasInWindow = 0;
+      for (int i = 0; i < stamps.length; i++) {
+        requestsInWindow += requests[i];
+        extrasInWindow += extras[i];
+      }
+      acquired = extrasInWindow < Math.max(minExtra, (long) (ratio * requestsInWindow));
+      if (acquired) {
+        extras[current]++;
+      }
+    }
+    (acquired ? spent : rejected).get(kind).increment();
+    return acquired;
+  }
+
+  /** must be called holding the lock; resets the bucket of the current second if it is stale. */
+  private int bucket() {
+    final long second = TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong());
+    final int idx = (int) Math.floorMod(second, (long) stamps.length);
+    if (stamps[idx] != second) {
+      // the other buckets may be stale too: discard whatever fell out of the window
+      for (int i = 0; i < stamps.length; i++) {
+        if (second - stamps[i] >= stamps.length) {
+          stamps[i] = second;
+          requests[i] = 0;
+          extras[i] = 0;
+        }
+      }
+      stamps[idx] = second;
+      requests[idx] = 0;
+      extras[idx] = 0;
+    }
+    return idx;
+  }
+}
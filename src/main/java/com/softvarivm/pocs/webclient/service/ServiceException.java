@@ -2,11 +2,16 @@ package com.softvarivm.pocs.webclient.service;
 
 import lombok.Getter;
 
+/**
+ * An error answered by the remote service, or met while calling it. It has no stack trace, which
+ * would tell nothing but the reactive operators it went through and is costly to fill when the
+ * remote service fails at high rate; instances can thus be reused.
+ */
 public class ServiceException extends Exception {
   @Getter private final int sc;
 
   public ServiceException(final String msg, final int status) {
-    super(msg);
+    super(msg, null, false, false);
     sc = status;
   }
 }
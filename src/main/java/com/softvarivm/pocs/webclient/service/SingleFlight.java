@@ -0,0 +1,97 @@
+package com.softvarivm.pocs.webclient.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Coalesces concurrent identical calls: while a call for a given key is in flight, whoever asks for
+ * the same key joins it instead of starting a new one.
+ *
+ * <ul>
+ *   <li>the first subscriber (the leader) triggers the call, later ones (followers) share its
+ *       result, including whatever retries the call performs
+ *   <li>a subscriber cancelling does not cancel the call for the rest; the call is only cancelled
+ *       once all of them are gone
+ *   <li>the key is released as soon as the call completes, fails or is cancelled, so the next
+ *       subscriber triggers a new call
+ * </ul>
+ *
+ * The number of leaders and followers is counted in {@code upstream.singleflight.calls}, tagged
+ * with the role, which gives the coalescing ratio.
+ */
+@Component
+public class SingleFlight {
+  private static final Logger LOG = LogManager.getLogger(SingleFlight.class);
+
+  private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+  private final Counter leaders;
+  private final Counter followers;
+
+  public SingleFlight(final MeterRegistry registry) {
+    leaders = callsCounter(registry, "leader");
+    followers = callsCounter(registry, "follower");
+  }
+
+  private static Counter callsCounter(final MeterRegistry registry, final String role) {
+    return Counter.builder("upstream.singleflight.calls")
+        .description("calls to the upstream, by whether they triggered or joined the request")
+        .tag("role", role)
+        .register(registry);
+  }
+
+  /**
+   * @param key identifies the call, e.g. the URI requested
+   * @param call provides the call to perform when none is in flight for {@code key}
+   * @return a {@link Mono} joining the call in flight for {@code key}, or starting a new one when
+   *     subscribed
+   * @param <T> type of the result of the call
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Mono<T> execute(final String key, final Supplier<Mono<T>> call) {
+    return Mono.deferContextual(
+        ctx -> {
+          final boolean[] leader = {false};
+          final Mono<T> shared =
+              (Mono<T>)
+                  inFlight.computeIfAbsent(
+                      key,
+                      k -> {
+                        leader[0] = true;
+                        return share(k, call.get());
+                      });
+          if (leader[0]) {
+            leaders.increment();
+          } else {
+            followers.increment();
+            RequestLog.of(ctx).info(LOG, "Joining the call in flight for {}", key);
+          }
+          return shared;
+        });
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Mono<T> share(final String key, final Mono<T> call) {
+    final Mono<?>[] self = new Mono<?>[1];
+    final Runnable release = () -> inFlight.remove(key, self[0]);
+    // released before the result is propagated, so that a subscriber reacting to it does not join
+    // an already finished call
+    self[0] =
+        call.doOnSuccess(v -> release.run())
+            .doOnError(e -> release.run())
+            .doOnCancel(release)
+            .share();
+    return (Mono<T>) self[0];
+  }
+
+  // VisibleForTesting
+  int inFlightCount() {
+    return inFlight.size();
+  }
+}
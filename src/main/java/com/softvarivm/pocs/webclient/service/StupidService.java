@@ -2,17 +2,37 @@ package com.softvarivm.pocs.webclient.service;
 
 import com.softvarivm.pocs.webclient.configuration.GeneralConfiguration;
 import com.softvarivm.pocs.webclient.entities.ProblemDetails;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.netty.handler.timeout.ReadTimeoutException;
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ClientHttpRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
 
 /**
  * This service uses {@link WebClient} to send a http GET operation to a remote service. The {@link
@@ -31,20 +51,85 @@ import reactor.util.retry.Retry;
  *   <li>the response comes with http status code 500 SERVER_ERROR
  *   <li>the response comes with http status code 503 SERVICE_UNAVAILABLE
  * </ul>
+ *
+ * Successful responses are kept in a {@link ResponseCache}: fresh ones are served without sending
+ * any request, stale ones are revalidated and, while the remote service is unavailable, served
+ * anyway for a while.<br>
+ * Concurrent requests for the same resource are coalesced by {@link SingleFlight}: only one of them
+ * (and its retries) reaches the remote service, and all of them get its answer; unless it ran out
+ * of the deadline of the request that sent it, which the others do not share.<br>
+ * Every request sent goes through a {@link CircuitBreaker}: when the remote service keeps failing
+ * or answering slowly the circuit opens, and requests fail fast with a {@code 503
+ * SERVICE_UNAVAILABLE} without sending anything until the remote service proves healthy again.<br>
+ * Slow requests are hedged by {@link RequestHedger}. Retries and hedges are bounded by the {@link
+ * RetryBudget}.<br>
+ * Calls sent at once are bounded by the {@link ConcurrencyLimiter}, which adapts the bound to the
+ * latency and the errors of the remote service; a call finding no room in time is answered a {@code
+ * 503 SERVICE_UNAVAILABLE} without being sent.<br>
+ * Every attempt goes to one of the replicas of the remote service, chosen by the {@link
+ * UpstreamBalancer}; a retry or a hedge goes to another one than the previous attempt.<br>
+ * Requests, retries and calls in flight are metered by {@link UpstreamMetrics}.<br>
+ * The service keeps no state of its own about a request, so concurrent requests cannot see each
+ * other's: errors are reused, stackless, exceptions, and the {@link ProblemDetails} answered are
+ * shared and serialized once, see {@link ProblemDetailsCache}.<br>
+ * Every request has a {@link Deadline}, given by the caller or configured per scenario: each
+ * attempt waits for the remote service no longer than the time left, retries that could not be
+ * answered in time are not sent, and once the time is up the answer is a {@code 504
+ * GATEWAY_TIMEOUT} {@link ProblemDetails}.<br>
+ * Lines logged on behalf of a request follow the {@link RequestLog} found in its context: only
+ * sampled or traced requests are logged with the default levels.
  */
 @Service
 public class StupidService {
   private static final Logger LOG = LogManager.getLogger(StupidService.class);
   private final WebClient webClient;
+  private final ResponseCache responseCache;
+  private final SingleFlight singleFlight;
+  private final CircuitBreaker circuitBreaker;
+  private final RequestHedger requestHedger;
+  private final RetryBudget retryBudget;
+  private final ProblemDetailsCache problems;
+  private final UpstreamMetrics upstreamMetrics;
+  private final Duration minBackoff;
+  private final Deadlines deadlines;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final UpstreamBalancer upstreamBalancer;
 
-  private volatile String instance;
-  private volatile int errSc;
+  // the errors mapped from a status code are reused, see ServiceException
+  private final Map<Integer, Mono<ServiceException>> clientErrors = new ConcurrentHashMap<>();
+  private final Map<Integer, Mono<ServiceException>> serverErrors = new ConcurrentHashMap<>();
 
-  private final AtomicInteger pendingResponsesCtr = new AtomicInteger();
   private static final int MAX_RETRIES = 3;
+  private static final DeadlineExceededException DEADLINE_EXCEEDED =
+      new DeadlineExceededException("Deadline exceeded");
+  private static final DeadlineExceededException NO_TIME_TO_RETRY =
+      new DeadlineExceededException("Deadline exceeded, no time left to retry");
 
-  public StupidService(@Qualifier("webClientSslTrustAllCerts") final WebClient wc) {
+  public StupidService(
+      @Qualifier("webClientSslTrustAllCerts") final WebClient wc,
+      final ResponseCache cache,
+      final SingleFlight sf,
+      final CircuitBreaker cb,
+      final RequestHedger hedger,
+      final RetryBudget budget,
+      final ProblemDetailsCache problemDetailsCache,
+      final UpstreamMetrics metrics,
+      @Value("${service.retry.minBackoff:500ms}") final Duration backoff,
+      final Deadlines dls,
+      final ConcurrencyLimiter limiter,
+      final UpstreamBalancer balancer) {
     webClient = wc;
+    responseCache = cache;
+    singleFlight = sf;
+    circuitBreaker = cb;
+    requestHedger = hedger;
+    retryBudget = budget;
+    problems = problemDetailsCache;
+    upstreamMetrics = metrics;
+    minBackoff = backoff;
+    deadlines = dls;
+    concurrencyLimiter = limiter;
+    upstreamBalancer = balancer;
   }
 
   /**
@@ -55,94 +140,367 @@ public class StupidService {
    *     representing the error returned.
    */
   public Mono<Object> saySomething(final String scenario) {
-    LOG.info("Entering service to fetch remote resources with WebClient (scenario '{}')", scenario);
-    instance = String.format("/mock/%s", scenario);
-    return webClient
-        .get()
-        .uri(instance)
-        .retrieve()
-        .onStatus(
-            HttpStatusCode::is4xxClientError, response -> handleClientErrors(response.statusCode()))
-        .onStatus(
-            HttpStatusCode::is5xxServerError, response -> handleServerErrors(response.statusCode()))
-        .bodyToMono(Object.class)
-        .doFirst(pendingResponsesCtr::incrementAndGet)
-        .doOnError(err -> LOG.info("Error Occurred: {}", err.getMessage()))
-        .doOnSuccess(b -> LOG.info("Successful response arrived with body: {}", b))
-        .retryWhen(
-            Retry.backoff(MAX_RETRIES, Duration.ofMillis(500L))
-                .filter(t -> t instanceof ServiceRetryErrException)
-                // takes care of keeping the balance of pending requests waiting for an answer in
-                // every retry
-                .doAfterRetry(retrySignal -> pendingResponsesCtr.decrementAndGet()))
-        .doFinally(
-            // decrement the counter for the first request pending og and answer (and the only one
-            // if there were no retries)
-            signalType -> {
-              LOG.info(
-                  "There are {} requests waiting for an answer",
-                  pendingResponsesCtr.decrementAndGet());
-            })
-        .onErrorResume(
-            err -> {
-              LOG.info("Error: {}", err.getMessage());
-              return Mono.just(createProblemDetails(err));
-            });
-  }
-
-  private Mono<? extends Throwable> handleClientErrors(final HttpStatusCode statusCode) {
-    errSc = statusCode.value();
-    final HttpStatus httpSc = HttpStatus.resolve(statusCode.value());
-    if (httpSc == null) {
-      return Mono.error(new ServiceException("Unknown status code received from Server", errSc));
+    final String uri = String.format("/mock/%s", scenario);
+    return Mono.deferContextual(
+        ctx -> {
+          final RequestLog log = RequestLog.of(ctx);
+          log.info(LOG, "Fetching remote resources with WebClient (scenario '{}')", scenario);
+          final Deadline deadline = deadlines.of(ctx, scenario);
+          final ResponseCache.CachedResponse cached = responseCache.lookup(uri);
+          if (responseCache.isFresh(cached)) {
+            log.info(LOG, "Fresh response for {} served from cache", uri);
+            return Mono.justOrEmpty(cached.body());
+          }
+          if (deadline.isExpired()) {
+            return Mono.just(createProblemDetails(deadlineExceeded(), uri));
+          }
+          final boolean[] leader = {false};
+          return singleFlight
+              .execute(
+                  uri,
+                  () -> {
+                    leader[0] = true;
+                    return fetch(scenario, uri, cached, log, deadline);
+                  })
+              // the call joined ran out of the time of the caller that sent it: a caller with
+              // time left sends its own
+              .onErrorResume(
+                  DeadlineExceededException.class,
+                  e ->
+                      leader[0] || deadline.isExpired()
+                          ? Mono.error(e)
+                          : fetch(scenario, uri, cached, log, deadline))
+              // a caller joining a call in flight waits no longer than its own deadline
+              .timeout(deadline.remaining())
+              .onErrorResume(
+                  e -> e instanceof TimeoutException || e instanceof DeadlineExceededException,
+                  e ->
+                      Mono.just(
+                          createProblemDetails(
+                              e instanceof DeadlineExceededException ? e : deadlineExceeded(),
+                              uri)));
+        });
+  }
+
+  /**
+   * @param log how the request triggering the call logs; requests joining it are not logged
+   * @param deadline deadline of the request triggering the call, which bounds every attempt
+   * @return the body, or the {@link ProblemDetails} of the failure; running out of {@code deadline}
+   *     is signalled as a {@link DeadlineExceededException} instead, since it concerns the request
+   *     triggering the call only
+   */
+  private Mono<Object> fetch(
+      final String scenario,
+      final String uri,
+      final ResponseCache.CachedResponse cached,
+      final RequestLog log,
+      final Deadline deadline) {
+    // the replica of the previous attempt, which the next one avoids
+    final AtomicReference<UpstreamBalancer.Endpoint> previous = new AtomicReference<>();
+    final Mono<ResponseEntity<Object>> request =
+        upstreamBalancer
+            .balanced(
+                previous,
+                endpoint ->
+                    webClient
+                        .get()
+                        .uri(endpoint.resolve(uri))
+                        .httpRequest(httpRequest -> responseTimeout(httpRequest, deadline))
+                        .headers(headers -> responseCache.addConditionalHeaders(headers, cached))
+                        .retrieve()
+                        .onStatus(
+                            HttpStatusCode::is4xxClientError,
+                            response -> handleClientErrors(response.statusCode()))
+                        .onStatus(
+                            HttpStatusCode::is5xxServerError,
+                            response -> handleServerErrors(response.statusCode()))
+                        .toEntity(Object.class))
+            .transform(r -> upstreamMetrics.timed(scenario, r))
+            // every attempt is recorded, and no attempt is sent while the circuit is open
+            .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+            .transform(concurrencyLimiter::limit);
+    final Mono<ResponseEntity<Object>> attempt = withinDeadline(request, deadline);
+    return Mono.defer(
+        () -> {
+          final AtomicInteger retries = new AtomicInteger();
+          return requestHedger
+              .hedge(scenario, attempt)
+              .mapNotNull(entity -> responseCache.onResponse(uri, cached, entity, log))
+              .doFirst(upstreamMetrics.inFlight()::incrementAndGet)
+              .doOnError(err -> log.info(LOG, "Error Occurred: {}", err.getMessage()))
+              .doOnSuccess(
+                  b -> log.detail(LOG, "Successful response arrived with body: {}", () -> b))
+              .onErrorMap(err -> outOfTimeForRetry(err, deadline, retries.get()))
+              .retryWhen(
+                  retrySpec()
+                      // takes care of keeping the balance of pending requests waiting for an
+                      // answer in every retry
+                      .doAfterRetry(
+                          retrySignal -> {
+                            upstreamMetrics.inFlight().decrementAndGet();
+                            retries.incrementAndGet();
+                          }))
+              .doFirst(retryBudget::onRequest)
+              .doFinally(
+                  // decrement the counter for the first request pending og and answer (and the
+                  // only one if there were no retries)
+                  signalType -> {
+                    final int pending = upstreamMetrics.inFlight().decrementAndGet();
+                    log.info(LOG, "There are {} requests waiting for an answer", pending);
+                    upstreamMetrics.recordRetries(scenario, retries.get());
+                  })
+              .onErrorResume(
+                  err -> {
+                    log.info(LOG, "Error: {}", err.getMessage());
+                    final ResponseCache.CachedResponse stale =
+                        isUpstreamUnavailable(err) ? responseCache.lookupStaleIfError(uri) : null;
+                    if (stale != null) {
+                      log.info(
+                          LOG,
+                          "Remote service unavailable, stale response for {} served from cache",
+                          uri);
+                      return Mono.justOrEmpty(stale.body());
+                    }
+                    if (isDeadlineExceeded(err, deadline)) {
+                      // answered by every caller sharing the call, on its own deadline
+                      return Mono.error(
+                          err instanceof DeadlineExceededException ? err : deadlineExceeded());
+                    }
+                    return Mono.just(problem(err, uri).problem());
+                  });
+        });
+  }
+
+  /**
+   * send a http GET operation to a remote service, relaying the body of a successful response as it
+   * arrives: it is neither parsed nor buffered, and the content type and length of the remote
+   * response are kept. Error responses are mapped to {@link ProblemDetails} as in {@link
+   * #saySomething(String)}, but with the status of the {@link ProblemDetails} as http status code.
+   *
+   * @param scenario
+   * @return a {@link Mono} wrapping the response to relay to the caller.
+   */
+  public Mono<ResponseEntity<Flux<DataBuffer>>> passThrough(final String scenario) {
+    final String uri = String.format("/mock/%s", scenario);
+    return Mono.deferContextual(
+        ctx -> {
+          final RequestLog log = RequestLog.of(ctx);
+          log.info(LOG, "Relaying remote resources with WebClient (scenario '{}')", scenario);
+          final Deadline deadline = deadlines.of(ctx, scenario);
+          final AtomicInteger retries = new AtomicInteger();
+          final AtomicReference<UpstreamBalancer.Endpoint> previous = new AtomicReference<>();
+          final Mono<ResponseEntity<Flux<DataBuffer>>> request =
+              upstreamBalancer
+                  .balanced(
+                      previous,
+                      endpoint ->
+                          webClient
+                              .get()
+                              .uri(endpoint.resolve(uri))
+                              .httpRequest(httpRequest -> responseTimeout(httpRequest, deadline))
+                              .retrieve()
+                              .onStatus(
+                                  HttpStatusCode::is4xxClientError,
+                                  response -> handleClientErrors(response.statusCode()))
+                              .onStatus(
+                                  HttpStatusCode::is5xxServerError,
+                                  response -> handleServerErrors(response.statusCode()))
+                              .toEntityFlux(DataBuffer.class))
+                  .transform(r -> upstreamMetrics.timed(scenario, r))
+                  .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                  .transform(concurrencyLimiter::limit);
+          return withinDeadline(request, deadline)
+              .map(StupidService::relayed)
+              .onErrorMap(err -> outOfTimeForRetry(err, deadline, retries.get()))
+              .retryWhen(retrySpec().doAfterRetry(retrySignal -> retries.incrementAndGet()))
+              .doFirst(retryBudget::onRequest)
+              .onErrorResume(
+                  err -> {
+                    log.info(LOG, "Error: {}", err.getMessage());
+                    return Mono.just(problemEntity(problem(err, uri, deadline)));
+                  });
+        });
+  }
+
+  private static ResponseEntity<Flux<DataBuffer>> relayed(
+      final ResponseEntity<Flux<DataBuffer>> upstream) {
+    final HttpHeaders headers = new HttpHeaders();
+    final MediaType contentType = upstream.getHeaders().getContentType();
+    if (contentType != null) {
+      headers.setContentType(contentType);
+    }
+    final long contentLength = upstream.getHeaders().getContentLength();
+    if (contentLength >= 0) {
+      headers.setContentLength(contentLength);
+    }
+    return new ResponseEntity<>(upstream.getBody(), headers, upstream.getStatusCode());
+  }
+
+  private static ResponseEntity<Flux<DataBuffer>> problemEntity(
+      final ProblemDetailsCache.Entry problem) {
+    // wrapping does not copy the json, which is never written to
+    final byte[] json = problem.json();
+    final int status = problem.problem().getStatus();
+    return ResponseEntity.status(
+            status >= 100 && status <= 999 ? status : HttpStatus.BAD_GATEWAY.value())
+        .contentType(MediaType.APPLICATION_JSON)
+        .contentLength(json.length)
+        .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(json)));
+  }
+
+  /** sets the time an attempt waits for the remote service, from the time left to the request. */
+  private void responseTimeout(final ClientHttpRequest request, final Deadline deadline) {
+    if (request.getNativeRequest() instanceof HttpClientRequest nativeRequest) {
+      nativeRequest.responseTimeout(deadlines.attemptTimeout(deadline));
+    }
+  }
+
+  /**
+   * @return {@code attempt}, failing without sending anything once {@code deadline} is expired
+   */
+  private static <T> Mono<T> withinDeadline(final Mono<T> attempt, final Deadline deadline) {
+    return Mono.defer(() -> deadline.isExpired() ? Mono.error(deadlineExceeded()) : attempt);
+  }
+
+  /**
+   * @param err error of the last attempt
+   * @param retries retries already sent
+   * @return {@code err}, or a {@link DeadlineExceededException} if it should be retried but the
+   *     retry could not be answered in time
+   */
+  private Throwable outOfTimeForRetry(
+      final Throwable err, final Deadline deadline, final int retries) {
+    if (err instanceof ServiceRetryErrException
+        && retries < MAX_RETRIES
+        && !deadlines.allowsRetry(deadline, minBackoff.multipliedBy(1L << retries))) {
+      return NO_TIME_TO_RETRY;
     }
-    final Mono<? extends Throwable> monoErrResult;
-    switch (httpSc) {
-      case BAD_REQUEST -> monoErrResult =
-          Mono.error(new ServiceException("Bad Request, try again with something better", errSc));
-      case NOT_FOUND -> monoErrResult =
-          Mono.error(new ServiceException("Resource not found", errSc));
-      default -> monoErrResult =
-          Mono.error(new ServiceException("Unexpected status code received from Server", errSc));
+    return err;
+  }
+
+  private static DeadlineExceededException deadlineExceeded() {
+    return DEADLINE_EXCEEDED;
+  }
+
+  /** as {@link #problem(Throwable, String)}, but a failure past the deadline is a 504. */
+  private ProblemDetailsCache.Entry problem(
+      final Throwable t, final String instance, final Deadline deadline) {
+    if (isDeadlineExceeded(t, deadline) && !(t instanceof DeadlineExceededException)) {
+      return problem(deadlineExceeded(), instance);
     }
-    return monoErrResult;
+    return problem(t, instance);
+  }
+
+  /** whether {@code t} is the failure of a request that ran out of its time. */
+  private static boolean isDeadlineExceeded(final Throwable t, final Deadline deadline) {
+    return t instanceof DeadlineExceededException
+        || (deadline.isExpired() && !(t instanceof ServiceException));
+  }
+
+  /** backoff retries of the requests failing with a retryable error, within the budget. */
+  private RetryBackoffSpec retrySpec() {
+    return Retry.backoff(MAX_RETRIES, minBackoff)
+        .filter(
+            t ->
+                t instanceof ServiceRetryErrException
+                    && retryBudget.tryAcquire(RetryBudget.Kind.RETRY));
+  }
+
+  /**
+   * @param t the error the request to the remote service ended with
+   * @return whether the remote service is unavailable (503/504 after retries, unreachable, the
+   *     circuit is open or no call can be sent within the limit), as opposed to rejecting the
+   *     request
+   */
+  private static boolean isUpstreamUnavailable(final Throwable t) {
+    final Throwable cause = Exceptions.isRetryExhausted(t) ? t.getCause() : t;
+    return cause instanceof ServiceRetryErrException
+        || cause instanceof WebClientRequestException
+        || cause instanceof CallNotPermittedException
+        || cause instanceof ConcurrencyLimitExceededException;
+  }
+
+  /**
+   * drops the response cached for {@code scenario}, if any, e.g. one fetched by the warm-up.
+   *
+   * @param scenario the scenario requested
+   */
+  void evictCached(final String scenario) {
+    responseCache.invalidate(String.format("/mock/%s", scenario));
+  }
+
+  // VisibleForTesting
+  Mono<? extends Throwable> handleClientErrors(final HttpStatusCode statusCode) {
+    return clientErrors.computeIfAbsent(
+        statusCode.value(), sc -> Mono.error(clientError(HttpStatus.resolve(sc), sc)));
   }
 
-  private Mono<? extends Throwable> handleServerErrors(final HttpStatusCode statusCode) {
-    errSc = statusCode.value();
-    final HttpStatus httpSc = HttpStatus.resolve(statusCode.value());
+  private static ServiceException clientError(final HttpStatus httpSc, final int sc) {
     if (httpSc == null) {
-      return Mono.error(new ServiceException("Unknown status code received from Server", errSc));
+      return new ServiceException("Unknown status code received from Server", sc);
     }
-    final Mono<? extends Throwable> monoErrResult;
-    switch (httpSc) {
-      case SERVICE_UNAVAILABLE -> monoErrResult =
-          Mono.error(new ServiceRetryErrException("Remote server is unavailable", errSc));
-      case GATEWAY_TIMEOUT -> monoErrResult =
-          Mono.error(new ServiceRetryErrException("Gateway timeout", errSc));
-      default -> monoErrResult =
-          Mono.error(new ServiceException("Unexpected status code received from Server", errSc));
+    return switch (httpSc) {
+      case BAD_REQUEST -> new ServiceException("Bad Request, try again with something better", sc);
+      case NOT_FOUND -> new ServiceException("Resource not found", sc);
+      default -> new ServiceException("Unexpected status code received from Server", sc);
+    };
+  }
+
+  // VisibleForTesting
+  Mono<? extends Throwable> handleServerErrors(final HttpStatusCode statusCode) {
+    return serverErrors.computeIfAbsent(
+        statusCode.value(), sc -> Mono.error(serverError(HttpStatus.resolve(sc), sc)));
+  }
+
+  private static ServiceException serverError(final HttpStatus httpSc, final int sc) {
+    if (httpSc == null) {
+      return new ServiceException("Unknown status code received from Server", sc);
     }
-    return monoErrResult;
+    return switch (httpSc) {
+      case SERVICE_UNAVAILABLE -> new ServiceRetryErrException("Remote server is unavailable", sc);
+      case GATEWAY_TIMEOUT -> new ServiceRetryErrException("Gateway timeout", sc);
+      default -> new ServiceException("Unexpected status code received from Server", sc);
+    };
+  }
+
+  /**
+   * @param t the error the request ended with
+   * @param instance the resource requested
+   * @return the {@link ProblemDetails} of {@code t}, shared, and its json
+   */
+  private ProblemDetailsCache.Entry problem(final Throwable t, final String instance) {
+    return problems.get(statusOf(t), t.getMessage(), instance);
   }
 
-  private ProblemDetails createProblemDetails(final Throwable t) {
-    final ProblemDetails p = new ProblemDetails();
-    p.setTitle("Problem accessing/updating remote resources hosted in Wiremock cloud");
-    p.setInstance(instance);
-    if (t instanceof ServiceException e) {
-      p.setStatus(e.getSc());
-    } else {
-      p.setStatus(this.errSc);
+  /**
+   * @return the status of the error the request ended with: the one answered by the remote service
+   *     (by its last attempt if retries were exhausted), {@code 503} if the circuit is open, {@code
+   *     504} on a timeout, the response timeout of an attempt included, {@code 502} if the remote
+   *     service could not be reached
+   */
+  private static int statusOf(final Throwable t) {
+    final Throwable cause = Exceptions.isRetryExhausted(t) ? t.getCause() : t;
+    if (cause instanceof ServiceException e) {
+      return e.getSc();
+    } else if (cause instanceof CallNotPermittedException) {
+      return HttpStatus.SERVICE_UNAVAILABLE.value();
+    } else if (cause instanceof TimeoutException
+        || cause instanceof ReadTimeoutException
+        || (cause instanceof WebClientRequestException
+            && cause.getCause() instanceof ReadTimeoutException)) {
+      return HttpStatus.GATEWAY_TIMEOUT.value();
     }
-    p.setCause(t.getMessage() != null ? t.getMessage() : null);
-    p.setDetail("WireMock was told to fail in this case: you got what you mocked");
-    return p;
+    return HttpStatus.BAD_GATEWAY.value();
+  }
+
+  // VisibleForTesting
+  ProblemDetails createProblemDetails(final Throwable t, final String instance) {
+    return problem(t, instance).problem();
   }
 
   // VisibleForTesting
   int getPendingRequestsCounter() {
-    LOG.info("Counter of pending responses is: {}", pendingResponsesCtr.get());
-    return pendingResponsesCtr.get();
+    LOG.info("Counter of pending responses is: {}", upstreamMetrics.inFlight().get());
+    return upstreamMetrics.inFlight().get();
   }
 }
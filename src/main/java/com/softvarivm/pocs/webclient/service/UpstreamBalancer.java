@@ -0,0 +1,326 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.softvarivm.pocs.webclient.configuration.LoadBalancingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Spreads the requests to the remote service over its replicas ({@code
+ * service.remote.balancing.endpoints}), so that a slow or failing replica does not take all the
+ * traffic with it:
+ *
+ * <ul>
+ *   <li>every request goes to the better of two replicas drawn at random (power of two choices):
+ *       the one with fewer requests waiting for an answer, or with the lower average latency
+ *       weighted by them, as configured
+ *   <li>a replica failing {@code consecutiveFailures} times in a row (503, 504, timeouts and
+ *       connection errors) is ejected for a while, longer every time it is ejected again; once the
+ *       time is up it gets requests again. No more than {@code maxEjectedPercent} of the replicas
+ *       are ejected at once, and if all of them are, they all get requests
+ *   <li>a retry, or a hedge, goes to another replica than the previous attempt of the call, if
+ *       there is another one
+ * </ul>
+ *
+ * For every replica, the requests waiting, the average latency, whether it is ejected and the
+ * number of ejections are published in {@code upstream.endpoints.*}, tagged with its base url.
+ */
+@Component
+public class UpstreamBalancer {
+  private static final Logger LOG = LogManager.getLogger(UpstreamBalancer.class);
+
+  private final List<Endpoint> endpoints = new ArrayList<>();
+  private final LoadBalancingProperties.Strategy strategy;
+  private final double decayNanos;
+  private final int consecutiveFailures;
+  private final long baseEjectionNanos;
+  private final long maxEjectionNanos;
+  private final int maxEjected;
+  private final LongSupplier nanoClock;
+
+  @Autowired
+  public UpstreamBalancer(
+      final LoadBalancingProperties props,
+      @Value("${service.remote.baseUrl}") final String baseUrl,
+      @Value("${service.remote.httpsPort}") final int httpsPort,
+      final MeterRegistry registry) {
+    this(
+        props,
+        props.getEndpoints().isEmpty()
+            ? List.of(String.format("%s:%d", baseUrl, httpsPort))
+            : props.getEndpoints(),
+        registry,
+        System::nanoTime);
+  }
+
+  // VisibleForTesting
+  UpstreamBalancer(
+      final LoadBalancingProperties props,
+      final List<String> baseUrls,
+      final MeterRegistry registry,
+      final LongSupplier clock) {
+    strategy = props.getStrategy();
+    decayNanos = Math.max(1L, props.getEwmaDecay().toNanos());
+    consecutiveFailures = Math.max(1, props.getConsecutiveFailures());
+    baseEjectionNanos = props.getBaseEjectionTime().toNanos();
+    maxEjectionNanos = Math.max(baseEjectionNanos, props.getMaxEjectionTime().toNanos());
+    maxEjected = baseUrls.size() * Math.max(0, props.getMaxEjectedPercent()) / 100;
+    nanoClock = clock;
+    for (final String baseUrl : baseUrls) {
+      final Endpoint endpoint = new Endpoint(trimSlash(baseUrl), registry);
+      endpoints.add(endpoint);
+      Gauge.builder("upstream.endpoints.outstanding", endpoint.outstanding, AtomicInteger::get)
+          .description("requests to the replica waiting for an answer")
+          .tag("endpoint", endpoint.baseUrl)
+          .register(registry);
+      TimeGauge.builder(
+              "upstream.endpoints.latency", endpoint, TimeUnit.NANOSECONDS, e -> e.ewmaNanos)
+          .description("average latency of the replica, decaying with time")
+          .tag("endpoint", endpoint.baseUrl)
+          .register(registry);
+      Gauge.builder("upstream.endpoints.ejected", endpoint, e -> e.isEjected(now()) ? 1.0 : 0.0)
+          .description("whether the replica is ejected")
+          .tag("endpoint", endpoint.baseUrl)
+          .register(registry);
+    }
+    LOG.info("Requests to the remote service spread over {} ({})", baseUrls, strategy);
+  }
+
+  private static String trimSlash(final String baseUrl) {
+    return baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+  }
+
+  /**
+   * @param previous the replica the previous attempt of the call went to, if any; updated with the
+   *     one chosen every time the attempt is subscribed
+   * @param attempt builds the attempt to send to a replica
+   * @return the attempt, sent to the replica chosen when subscribed
+   * @param <T> type of the answer
+   */
+  public <T> Mono<T> balanced(
+      final AtomicReference<Endpoint> previous, final Function<Endpoint, Mono<T>> attempt) {
+    return Mono.defer(
+        () -> {
+          final Endpoint endpoint = choose(previous.get());
+          previous.set(endpoint);
+          endpoint.outstanding.incrementAndGet();
+          final long start = now();
+          return attempt
+              .apply(endpoint)
+              .doOnSuccess(answer -> onAnswer(endpoint, start))
+              .doOnError(err -> onError(endpoint, start, err))
+              .doFinally(signalType -> endpoint.outstanding.decrementAndGet());
+        });
+  }
+
+  /**
+   * @param avoid the replica not to choose, unless it is the only one left
+   * @return the replica to send a request to
+   */
+  // VisibleForTesting
+  Endpoint choose(final Endpoint avoid) {
+    if (endpoints.size() == 1) {
+      return endpoints.get(0);
+    }
+    final long now = now();
+    final List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+    for (final Endpoint endpoint : endpoints) {
+      if (endpoint.ejected && !endpoint.isEjected(now)) {
+        readmit(endpoint, now);
+      }
+      if (!endpoint.isEjected(now)) {
+        candidates.add(endpoint);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // better a chance with a replica ejected than none at all
+      candidates.addAll(endpoints);
+    }
+    if (candidates.size() > 1) {
+      candidates.remove(avoid);
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final int first = random.nextInt(candidates.size());
+    final int second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+    final Endpoint a = candidates.get(first);
+    final Endpoint b = candidates.get(second);
+    return cost(b) < cost(a) ? b : a;
+  }
+
+  private static void readmit(final Endpoint endpoint, final long now) {
+    synchronized (endpoint) {
+      if (!endpoint.ejected || endpoint.isEjected(now)) {
+        return;
+      }
+      endpoint.ejected = false;
+    }
+    LOG.info("Replica {} readmitted", endpoint.baseUrl);
+  }
+
+  private double cost(final Endpoint endpoint) {
+    final int outstanding = endpoint.outstanding.get();
+    return switch (strategy) {
+      case LEAST_OUTSTANDING -> outstanding;
+        // a replica not measured yet costs nothing, so that it gets measured
+      case EWMA -> endpoint.ewmaNanos * (outstanding + 1);
+    };
+  }
+
+  private void onAnswer(final Endpoint endpoint, final long start) {
+    final long now = now();
+    synchronized (endpoint) {
+      endpoint.sample(now - start, now);
+      endpoint.failures = 0;
+      if (!endpoint.isEjected(now)) {
+        // back to normal: the next ejection, if any, is a first one again
+        endpoint.ejections = 0;
+      }
+    }
+  }
+
+  private void onError(final Endpoint endpoint, final long start, final Throwable err) {
+    if (!isFailure(err)) {
+      if (err instanceof ServiceException) {
+        // any other answer tells the latency of the replica all the same
+        onAnswer(endpoint, start);
+      }
+      return;
+    }
+    final long now = now();
+    synchronized (endpoint) {
+      // a failure weighs at least twice the average, so that failing fast does not attract traffic
+      endpoint.sample(Math.max(now - start, (long) (2.0 * endpoint.ewmaNanos)), now);
+      if (++endpoint.failures < consecutiveFailures || endpoint.isEjected(now)) {
+        return;
+      }
+      if (ejectedCount(now) >= maxEjected) {
+        LOG.warn("Replica {} keeps failing, but no more replicas can be ejected", endpoint.baseUrl);
+        return;
+      }
+      endpoint.failures = 0;
+      final long ejection =
+          Math.min(maxEjectionNanos, baseEjectionNanos << Math.min(20, endpoint.ejections));
+      endpoint.ejections++;
+      endpoint.ejectedUntil = now + ejection;
+      endpoint.ejected = true;
+      endpoint.ejectionsCounter.increment();
+      LOG.warn(
+          "Replica {} ejected for {} after {} failures in a row: {}",
+          endpoint.baseUrl,
+          Duration.ofNanos(ejection),
+          consecutiveFailures,
+          err.getMessage());
+    }
+  }
+
+  /**
+   * @return whether {@code err} tells the replica is unavailable, as opposed to rejecting the
+   *     request
+   */
+  private static boolean isFailure(final Throwable err) {
+    return err instanceof ServiceRetryErrException
+        || err instanceof WebClientRequestException
+        || err instanceof TimeoutException;
+  }
+
+  private int ejectedCount(final long now) {
+    int ejected = 0;
+    for (final Endpoint endpoint : endpoints) {
+      if (endpoint.isEjected(now)) {
+        ejected++;
+      }
+    }
+    return ejected;
+  }
+
+  private long now() {
+    return nanoClock.getAsLong();
+  }
+
+  /**
+   * @return the replicas of the remote service
+   */
+  List<Endpoint> endpoints() {
+    return endpoints;
+  }
+
+  /** a replica of the remote service. */
+  public final class Endpoint {
+    private final String baseUrl;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Counter ejectionsCounter;
+
+    // written holding the lock of the endpoint
+    private volatile double ewmaNanos;
+    private boolean sampled;
+    private long lastSample;
+    private int failures;
+    private int ejections;
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+
+    private Endpoint(final String baseUrl, final MeterRegistry registry) {
+      this.baseUrl = baseUrl;
+      ejectionsCounter =
+          Counter.builder("upstream.endpoints.ejections")
+              .description("times the replica was ejected")
+              .tag("endpoint", baseUrl)
+              .register(registry);
+    }
+
+    /**
+     * @param path path of the resource requested, e.g. {@code /mock/ok}
+     * @return the url of {@code path} on this replica
+     */
+    public String resolve(final String path) {
+      return baseUrl + path;
+    }
+
+    public String baseUrl() {
+      return baseUrl;
+    }
+
+    private boolean isEjected(final long now) {
+      return ejected && ejectedUntil - now > 0L;
+    }
+
+    /** must be called holding the lock of the endpoint. */
+    private void sample(final long rtt, final long now) {
+      if (!sampled) {
+        ewmaNanos = rtt;
+        sampled = true;
+      } else {
+        // the older the average, the less it weighs
+        final double weight = Math.exp(-Math.max(0L, now - lastSample) / decayNanos);
+        ewmaNanos = ewmaNanos * weight + rtt * (1.0 - weight);
+      }
+      lastSample = now;
+    }
+
+    @Override
+    public String toString() {
+      return baseUrl;
+    }
+  }
+}
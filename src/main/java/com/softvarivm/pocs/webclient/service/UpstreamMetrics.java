@@ -0,0 +1,111 @@
+package com.softvarivm.pocs.webclient.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Micrometer instrumentation of the requests sent to the remote service:
+ *
+ * <ul>
+ *   <li>{@code upstream.requests}: timer of every request sent, retries and hedges included, tagged
+ *       with the scenario, the http status code received (or {@code IO_ERROR}, {@code CANCELLED})
+ *       and its outcome
+ *   <li>{@code upstream.request.retries}: retries needed by every call, tagged with the scenario
+ *   <li>{@code upstream.requests.inflight}: calls waiting for an answer
+ * </ul>
+ *
+ * Percentiles and histograms are configured with the {@code management.metrics.distribution.*}
+ * properties.
+ */
+@Component
+public class UpstreamMetrics {
+
+  private static final String IO_ERROR = "IO_ERROR";
+  private static final String CANCELLED = "CANCELLED";
+  private static final String UNKNOWN = "UNKNOWN";
+
+  private final MeterRegistry registry;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  public UpstreamMetrics(final MeterRegistry registry) {
+    this.registry = registry;
+    Gauge.builder("upstream.requests.inflight", inFlight, AtomicInteger::get)
+        .description("calls to the remote service waiting for an answer")
+        .register(registry);
+  }
+
+  /**
+   * @param scenario the scenario the request belongs to
+   * @param request a request to the remote service
+   * @return {@code request}, timed every time it is subscribed
+   * @param <T> type of the body of the response
+   */
+  public <T> Mono<ResponseEntity<T>> timed(
+      final String scenario, final Mono<ResponseEntity<T>> request) {
+    return Mono.defer(
+        () -> {
+          final long start = System.nanoTime();
+          return request
+              .doOnSuccess(
+                  entity ->
+                      record(scenario, entity != null ? entity.getStatusCode().value() : 0, start))
+              .doOnError(err -> recordError(scenario, err, start))
+              .doOnCancel(() -> record(scenario, CANCELLED, Outcome.UNKNOWN, start));
+        });
+  }
+
+  private void record(final String scenario, final int status, final long start) {
+    record(scenario, String.valueOf(status), Outcome.forStatus(status), start);
+  }
+
+  private void record(
+      final String scenario, final String status, final Outcome outcome, final long start) {
+    Timer.builder("upstream.requests")
+        .description("requests sent to the remote service")
+        .tag("scenario", scenario)
+        .tag("status", status)
+        .tag("outcome", outcome.name())
+        .register(registry)
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  private void recordError(final String scenario, final Throwable err, final long start) {
+    if (err instanceof ServiceException e) {
+      record(scenario, e.getSc(), start);
+    } else {
+      record(
+          scenario,
+          err instanceof WebClientRequestException ? IO_ERROR : UNKNOWN,
+          Outcome.UNKNOWN,
+          start);
+    }
+  }
+
+  /**
+   * @param scenario the scenario the call belongs to
+   * @param retries the retries the call needed
+   */
+  public void recordRetries(final String scenario, final int retries) {
+    DistributionSummary.builder("upstream.request.retries")
+        .description("retries needed by every call to the remote service")
+        .tag("scenario", scenario)
+        .register(registry)
+        .record(retries);
+  }
+
+  /**
+   * @return the counter of calls waiting for an answer
+   */
+  public AtomicInteger inFlight() {
+    return inFlight;
+  }
+}
@@ -0,0 +1,182 @@
+package com.softvarivm.pocs.webclient.service;
+
+import com.softvarivm.pocs.webclient.configuration.CachingDnsResolver;
+import com.softvarivm.pocs.webclient.configuration.WarmupProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Warms the application up at startup, so that the first requests after a deploy do not pay the
+ * name resolution, the connection and the TLS handshake to the remote service on top of the cold
+ * code, which would take longer than the time allowed to an attempt:
+ *
+ * <ol>
+ *   <li>the hosts of the remote service are resolved, and cached by the {@link CachingDnsResolver}
+ *   <li>{@code service.warmup.connections} connections are opened to every replica by each {@link
+ *       WebClient}, and kept in their pool
+ *   <li>the {@code service.warmup.scenarios} are requested {@code passes} times through {@link
+ *       StupidService#saySomething(String)}; their answers are dropped from the response cache, so
+ *       that every pass reaches the remote service and no real caller is served one of them
+ * </ol>
+ *
+ * It runs as an {@link ApplicationRunner}, so the application is not ready to take traffic (its
+ * readiness state) until the warm-up is over or {@code service.warmup.timeout} is up, whichever
+ * comes first. Failures along the way are logged and do not stop it. Its duration is recorded in
+ * {@code startup.warmup}, tagged with whether it was over in time.
+ */
+@Component
+public class UpstreamWarmup implements ApplicationRunner {
+  private static final Logger LOG = LogManager.getLogger(UpstreamWarmup.class);
+
+  private final WarmupProperties props;
+  private final WebClient secureClient;
+  private final WebClient cleartextClient;
+  private final String cleartextBaseUrl;
+  private final UpstreamBalancer upstreamBalancer;
+  private final CachingDnsResolver dnsResolver;
+  private final StupidService svc;
+  private final MeterRegistry registry;
+
+  private volatile boolean warm;
+
+  public UpstreamWarmup(
+      final WarmupProperties warmupProperties,
+      @Qualifier("webClientSslTrustAllCerts") final WebClient secure,
+      @Qualifier("webClientNoSsl") final WebClient cleartext,
+      @Value("${service.remote.baseUrl}") final String baseUrl,
+      final UpstreamBalancer balancer,
+      final CachingDnsResolver resolver,
+      final StupidService service,
+      final MeterRegistry meterRegistry) {
+    props = warmupProperties;
+    secureClient = secure;
+    cleartextClient = cleartext;
+    cleartextBaseUrl = baseUrl;
+    upstreamBalancer = balancer;
+    dnsResolver = resolver;
+    svc = service;
+    registry = meterRegistry;
+  }
+
+  @Override
+  public void run(final ApplicationArguments args) {
+    if (!props.isEnabled()) {
+      warm = true;
+      return;
+    }
+    LOG.info("Warming up, for {} at most", props.getTimeout());
+    final Timer.Sample sample = Timer.start(registry);
+    final boolean complete =
+        Boolean.TRUE.equals(
+            warmup()
+                .thenReturn(true)
+                .timeout(props.getTimeout(), Mono.just(false))
+                .onErrorResume(
+                    e -> {
+                      LOG.warn("Warm-up failed: {}", e.getMessage());
+                      return Mono.just(false);
+                    })
+                .block());
+    // also those of the calls cut short by the timeout
+    props.getScenarios().forEach(svc::evictCached);
+    final long nanos =
+        sample.stop(
+            Timer.builder("startup.warmup")
+                .description("time taken by the warm-up before being ready")
+                .tag("result", complete ? "complete" : "timeout")
+                .register(registry));
+    warm = complete;
+    if (complete) {
+      LOG.info("Warm-up over in {} ms", nanos / 1_000_000L);
+    } else {
+      LOG.warn("Warm-up not over in {}, ready anyway", props.getTimeout());
+    }
+  }
+
+  private Mono<Void> warmup() {
+    return resolveHosts()
+        .then(openConnections())
+        .then(
+            Flux.range(0, props.getPasses())
+                .concatMap(
+                    pass ->
+                        Flux.fromIterable(props.getScenarios())
+                            .flatMap(
+                                scenario ->
+                                    svc.saySomething(scenario)
+                                        // before the next pass is sent
+                                        .doOnTerminate(() -> svc.evictCached(scenario)))
+                            .then())
+                .then());
+  }
+
+  private Mono<Void> resolveHosts() {
+    final Set<String> hosts = new LinkedHashSet<>();
+    for (final UpstreamBalancer.Endpoint endpoint : upstreamBalancer.endpoints()) {
+      hosts.add(URI.create(endpoint.baseUrl()).getHost());
+    }
+    hosts.add(URI.create(cleartextBaseUrl).getHost());
+    return Flux.fromIterable(hosts)
+        .flatMap(
+            host ->
+                dnsResolver
+                    .resolveAll(host)
+                    .doOnNext(addresses -> LOG.info("{} resolved to {}", host, addresses))
+                    .onErrorResume(
+                        e -> {
+                          LOG.warn("{} cannot be resolved: {}", host, e.getMessage());
+                          return Mono.empty();
+                        }))
+        .then();
+  }
+
+  private Mono<Void> openConnections() {
+    return Flux.fromIterable(upstreamBalancer.endpoints())
+        .flatMap(endpoint -> openConnections(secureClient, endpoint.resolve(props.getPath())))
+        // the base url of the client applies to the relative path
+        .then(openConnections(cleartextClient, props.getPath()));
+  }
+
+  /**
+   * sends as many requests at once as connections are to be opened, so that none of them finds a
+   * connection idle in the pool.
+   */
+  private Mono<Void> openConnections(final WebClient client, final String uri) {
+    final int connections = props.getConnections();
+    return Flux.range(0, connections)
+        .flatMap(
+            n ->
+                client
+                    .head()
+                    .uri(uri)
+                    .exchangeToMono(ClientResponse::releaseBody)
+                    .onErrorResume(
+                        e -> {
+                          LOG.debug("Warm-up request to {} failed: {}", uri, e.getMessage());
+                          return Mono.empty();
+                        }),
+            Math.max(1, connections))
+        .then();
+  }
+
+  /**
+   * @return whether the warm-up is over, or was not to be done
+   */
+  public boolean isWarm() {
+    return warm;
+  }
+}
@@ -0,0 +1,241 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponseCode;
+import io.netty.handler.codec.dns.DnsSection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+class CachingDnsResolverTest {
+
+  private static final String HOST = "upstream.test";
+  private static final long TTL_SECONDS = 30L;
+  private static final InetAddress ADDRESS = address();
+
+  private final AtomicLong clock = new AtomicLong();
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private final EventLoopGroup loops = new NioEventLoopGroup(1);
+  private final NameServerStandIn nameServer = new NameServerStandIn();
+  private Channel nameServerChannel;
+  private CachingDnsResolver resolverUt;
+
+  private static InetAddress address() {
+    try {
+      return InetAddress.getByAddress(new byte[] {127, 0, 0, 1});
+    } catch (final UnknownHostException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @BeforeEach
+  void setUp() throws InterruptedException {
+    nameServerChannel =
+        new Bootstrap()
+            .group(loops)
+            .channel(NioDatagramChannel.class)
+            .handler(
+                new ChannelInitializer<DatagramChannel>() {
+                  @Override
+                  protected void initChannel(final DatagramChannel ch) {
+                    ch.pipeline()
+                        .addLast(new DatagramDnsQueryDecoder())
+                        .addLast(new DatagramDnsResponseEncoder())
+                        .addLast(nameServer);
+                  }
+                })
+            .bind("127.0.0.1", 0)
+            .sync()
+            .channel();
+    final int port = ((InetSocketAddress) nameServerChannel.localAddress()).getPort();
+
+    final DnsProperties props = new DnsProperties();
+    props.setMinTtl(Duration.ofSeconds(10));
+    props.setMaxTtl(Duration.ofMinutes(5));
+    props.setNegativeTtl(Duration.ofSeconds(5));
+    props.setRefreshAhead(Duration.ofSeconds(5));
+    props.setServeStale(Duration.ofMinutes(1));
+    props.setQueryTimeout(Duration.ofMillis(200));
+    props.setNameServers(List.of("127.0.0.1:" + port));
+    resolverUt =
+        new CachingDnsResolver(props, loops.next(), NioDatagramChannel.class, registry, clock::get);
+  }
+
+  @AfterEach
+  void tearDown() {
+    resolverUt.close();
+    nameServerChannel.close().syncUninterruptibly();
+    loops.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+  }
+
+  private void advance(final long seconds) {
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+
+  private double cache(final String result) {
+    return registry.get("upstream.dns.cache").tag("result", result).counter().count();
+  }
+
+  private void expectResolved() {
+    StepVerifier.create(resolverUt.resolveAll(HOST)).expectNext(List.of(ADDRESS)).verifyComplete();
+  }
+
+  @Test
+  void testAnswerCachedForItsTtl() throws Exception {
+    expectResolved();
+    expectResolved();
+    final InetSocketAddress resolved =
+        resolverUt
+            .getResolver(loops.next())
+            .resolve(InetSocketAddress.createUnresolved(HOST, 8443))
+            .get(5, TimeUnit.SECONDS);
+    assertEquals(ADDRESS, resolved.getAddress());
+    assertEquals(8443, resolved.getPort());
+    assertEquals(1, nameServer.queries.get());
+    assertEquals(1.0, cache("miss"));
+    assertEquals(2.0, cache("hit"));
+
+    advance(TTL_SECONDS + 1);
+    expectResolved();
+    assertEquals(2, nameServer.queries.get());
+    assertEquals(
+        2L, registry.get("upstream.dns.resolutions").tag("result", "success").timer().count());
+  }
+
+  @Test
+  void testAnswerRefreshedAheadOfExpiry() {
+    expectResolved();
+    // less than refreshAhead left: served from the cache, and resolved again in the background
+    advance(TTL_SECONDS - 4);
+    expectResolved();
+    assertEquals(1.0, cache("refresh"));
+    await()
+        .atMost(Duration.ofSeconds(5))
+        .until(
+            () ->
+                registry.get("upstream.dns.resolutions").tag("result", "success").timer().count()
+                    == 2L);
+    assertEquals(2, nameServer.queries.get());
+
+    // past the expiry of the first answer, but not of the refreshed one
+    advance(10);
+    expectResolved();
+    assertEquals(2, nameServer.queries.get());
+    assertEquals(1.0, cache("miss"));
+  }
+
+  @Test
+  void testExpiredAnswerServedWhenNameServerDown() {
+    expectResolved();
+    nameServer.answering = false;
+
+    advance(TTL_SECONDS + 1);
+    expectResolved();
+    assertEquals(1.0, cache("stale"));
+    assertEquals(
+        1L, registry.get("upstream.dns.resolutions").tag("result", "error").timer().count());
+
+    // beyond serveStale
+    advance(60);
+    StepVerifier.create(resolverUt.resolveAll(HOST))
+        .expectError(UnknownHostException.class)
+        .verify();
+    assertEquals(1.0, cache("stale"));
+  }
+
+  @Test
+  void testNotFoundCached() {
+    StepVerifier.create(resolverUt.resolveAll("missing.test"))
+        .expectError(UnknownHostException.class)
+        .verify();
+    StepVerifier.create(resolverUt.resolveAll("missing.test"))
+        .expectError(UnknownHostException.class)
+        .verify();
+    assertEquals(1.0, cache("miss"));
+    assertEquals(1.0, cache("negative_hit"));
+    assertEquals(
+        1L, registry.get("upstream.dns.resolutions").tag("result", "not_found").timer().count());
+
+    advance(6);
+    StepVerifier.create(resolverUt.resolveAll("missing.test"))
+        .expectError(UnknownHostException.class)
+        .verify();
+    assertEquals(2.0, cache("miss"));
+  }
+
+  @Test
+  void testLiteralNotResolved() {
+    StepVerifier.create(resolverUt.resolveAll("127.0.0.1"))
+        .expectNext(List.of(ADDRESS))
+        .verifyComplete();
+    assertEquals(0, nameServer.queries.get());
+    assertEquals(0.0, cache("miss"));
+  }
+
+  /**
+   * Name server standing in for the one of the remote service: {@code upstream.test} has a single A
+   * record, no AAAA one, and no other name exists. When not {@code answering}, queries are dropped.
+   */
+  private static final class NameServerStandIn
+      extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+    private final AtomicInteger queries = new AtomicInteger();
+    private volatile boolean answering = true;
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final DatagramDnsQuery query) {
+      if (!answering) {
+        return;
+      }
+      final DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+      final DatagramDnsResponse response =
+          new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+      response.setAuthoritativeAnswer(true).setRecursionAvailable(true);
+      response.addRecord(DnsSection.QUESTION, question);
+      if ((HOST + '.').equalsIgnoreCase(question.name())) {
+        if (question.type() == DnsRecordType.A) {
+          queries.incrementAndGet();
+          response.addRecord(
+              DnsSection.ANSWER,
+              new DefaultDnsRawRecord(
+                  question.name(),
+                  DnsRecordType.A,
+                  TTL_SECONDS,
+                  Unpooled.wrappedBuffer(ADDRESS.getAddress())));
+        }
+      } else {
+        response.setCode(DnsResponseCode.NXDOMAIN);
+      }
+      ctx.writeAndFlush(response);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(properties = "service.remote.http2.enabled=true")
+@ActiveProfiles("test")
+class Http2NegotiationTest {
+
+  private static final String TEST_OK_PATH = "/mock/ok";
+
+  @Autowired
+  @Qualifier("webClientSslTrustAllCerts")
+  private WebClient secureClient;
+
+  /** WireMock serves h2 over TLS when it is picked with ALPN, HTTP/1.1 otherwise. */
+  @Test
+  void testH2NegotiatedOverTls() {
+    stubFor(get(TEST_OK_PATH).willReturn(okJson("{}")));
+
+    secureClient.get().uri(TEST_OK_PATH).retrieve().toBodilessEntity().block();
+
+    final List<LoggedRequest> requests = findAll(getRequestedFor(urlEqualTo(TEST_OK_PATH)));
+    assertEquals(1, requests.size());
+    assertEquals("HTTP/2.0", requests.get(0).getProtocol());
+  }
+}
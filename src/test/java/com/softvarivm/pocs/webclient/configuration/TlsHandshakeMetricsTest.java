@@ -0,0 +1,72 @@
+package com.softvarivm.pocs.webclient.configuration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import javax.net.ssl.SSLException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import reactor.netty.http.client.HttpClient;
+
+@WireMockTest(httpsEnabled = true)
+class TlsHandshakeMetricsTest {
+
+  private static final String TEST_OK_PATH = "/mock/ok";
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private final TlsHandshakeMetrics metricsUt = new TlsHandshakeMetrics(registry);
+
+  /** a connection of its own, so that every request goes through a handshake. */
+  private void request(
+      final SslContext sslContext, final String provider, final WireMockRuntimeInfo wireMock) {
+    HttpClient.newConnection()
+        .secure(spec -> spec.sslContext(sslContext))
+        .doOnChannelInit((observer, channel, address) -> metricsUt.observe(channel, provider))
+        .get()
+        .uri("https://localhost:" + wireMock.getHttpsPort() + TEST_OK_PATH)
+        .responseContent()
+        .aggregate()
+        .block();
+  }
+
+  private long handshakes(final String provider, final String result) {
+    return registry
+        .get("upstream.tls.handshakes")
+        .tag("provider", provider)
+        .tag("result", result)
+        .timer()
+        .count();
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = TlsProperties.Provider.class,
+      names = {"OPENSSL", "JDK"})
+  void testSecondConnectionResumesTheSession(
+      final TlsProperties.Provider provider, final WireMockRuntimeInfo wireMock)
+      throws SSLException {
+    // the configuration tells netty to cache the sessions of OpenSSL clients
+    final GeneralConfiguration configuration = new GeneralConfiguration();
+    assumeTrue(provider != TlsProperties.Provider.OPENSSL || OpenSsl.isAvailable());
+    stubFor(get(TEST_OK_PATH).willReturn(okJson("{}")));
+    final TlsProperties tls = new TlsProperties();
+    tls.setProvider(provider);
+    final SslContext sslContext = configuration.upstreamSslContext(tls, new Http2Properties());
+    final String name = provider.name().toLowerCase();
+
+    request(sslContext, name, wireMock);
+    request(sslContext, name, wireMock);
+
+    assertEquals(1L, handshakes(name, "full"));
+    assertEquals(1L, handshakes(name, "resumed"));
+  }
+}
@@ -0,0 +1,52 @@
+package com.softvarivm.pocs.webclient.controllers;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "service.deadline.attemptTimeout=200ms")
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+class AttemptTimeoutTest {
+
+  private static final String OK_RESULT_BODY =
+      "{\"scenario\":\"ok\",\"value\":\"here you have a value\"}";
+
+  @Autowired private WebTestClient webTestClient;
+
+  @Test
+  void testAttemptTimeoutAnswersGatewayTimeout() {
+    stubFor(get("/mock/slow").willReturn(okJson(OK_RESULT_BODY).withFixedDelay(2000)));
+
+    // the deadline leaves time: the attempt times out, not the request
+    webTestClient
+        .get()
+        .uri("/test/slow")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.status")
+        .isEqualTo(HttpStatus.GATEWAY_TIMEOUT.value());
+    verify(1, getRequestedFor(urlEqualTo("/mock/slow")));
+  }
+}
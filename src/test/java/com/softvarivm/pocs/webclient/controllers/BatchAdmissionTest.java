@@ -0,0 +1,68 @@
+package com.softvarivm.pocs.webclient.controllers;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.softvarivm.pocs.webclient.entities.BatchResult;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "service.admission.perClientRate=1")
+@ActiveProfiles("test")
+class BatchAdmissionTest {
+
+  private static final String OK_RESULT_BODY =
+      "{\"scenario\":\"ok\",\"value\":\"here you have a value\"}";
+
+  @LocalServerPort private int port;
+
+  @Test
+  void testBatchScenariosAdmittedAgainstTheClientRate() {
+    // through the server, not bound to the context: the client is named by its address
+    final WebTestClient webTestClient =
+        WebTestClient.bindToServer().baseUrl("http://localhost:" + port).build();
+    stubFor(get("/mock/ok").willReturn(okJson(OK_RESULT_BODY)));
+
+    final List<BatchResult> results =
+        webTestClient
+            .post()
+            .uri("/test/batch")
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(List.of("ok", "ok", "ok"))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(BatchResult.class)
+            .getResponseBody()
+            .collectList()
+            .block();
+
+    // one request per second: the first scenario is admitted, the others shed but streamed
+    assertEquals(3, results.size());
+    assertEquals(1, results.stream().filter(r -> r.getProblem() == null).count());
+    assertEquals(
+        2,
+        results.stream()
+            .filter(
+                r ->
+                    r.getProblem() != null
+                        && r.getProblem().getStatus() == HttpStatus.TOO_MANY_REQUESTS.value())
+            .count());
+  }
+}
@@ -0,0 +1,196 @@
+package com.softvarivm.pocs.webclient.controllers;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.notFound;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.serviceUnavailable;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.softvarivm.pocs.webclient.entities.BatchResult;
+import com.softvarivm.pocs.webclient.service.Deadline;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+class StupidControllerTest {
+
+  private static final String OK_RESULT_BODY =
+      "{\"scenario\":\"ok\",\"value\":\"here you have a value\"}";
+
+  @Autowired private WebTestClient webTestClient;
+
+  @Test
+  void testPassThroughRelaysBodyAsIs() {
+    stubFor(
+        get("/mock/ok")
+            .willReturn(
+                okJson(OK_RESULT_BODY)
+                    .withHeader(
+                        HttpHeaders.CONTENT_LENGTH, String.valueOf(OK_RESULT_BODY.length()))));
+
+    webTestClient
+        .get()
+        .uri("/test/ok/raw")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .contentType(MediaType.APPLICATION_JSON)
+        .expectHeader()
+        .contentLength(OK_RESULT_BODY.length())
+        .expectBody(String.class)
+        .isEqualTo(OK_RESULT_BODY);
+  }
+
+  @Test
+  void testPassThroughMapsErrorsToProblemDetails() {
+    stubFor(get("/mock/fail").willReturn(notFound()));
+
+    webTestClient
+        .get()
+        .uri("/test/fail/raw")
+        .exchange()
+        .expectStatus()
+        .isNotFound()
+        .expectBody()
+        .jsonPath("$.status")
+        .isEqualTo(HttpStatus.NOT_FOUND.value())
+        .jsonPath("$.instance")
+        .isEqualTo("/mock/fail")
+        .jsonPath("$.cause")
+        .isEqualTo("Resource not found");
+  }
+
+  @Test
+  void testBatchStreamsEveryResultWithFailuresInline() {
+    stubFor(get("/mock/ok").willReturn(okJson(OK_RESULT_BODY)));
+    stubFor(get("/mock/fail").willReturn(notFound()));
+
+    final List<BatchResult> results =
+        webTestClient
+            .post()
+            .uri("/test/batch")
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(List.of("ok", "fail"))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .returnResult(BatchResult.class)
+            .getResponseBody()
+            .collectList()
+            .block();
+
+    final Map<String, BatchResult> byScenario =
+        results.stream().collect(Collectors.toMap(BatchResult::getScenario, Function.identity()));
+    assertEquals(2, byScenario.size());
+    assertNull(byScenario.get("ok").getProblem());
+    assertEquals(
+        Map.of("scenario", "ok", "value", "here you have a value"), byScenario.get("ok").getBody());
+    assertNull(byScenario.get("fail").getBody());
+    assertEquals(HttpStatus.NOT_FOUND.value(), byScenario.get("fail").getProblem().getStatus());
+  }
+
+  @Test
+  void testEmptyBatchRejected() {
+    webTestClient
+        .post()
+        .uri("/test/batch")
+        .accept(MediaType.APPLICATION_NDJSON)
+        .bodyValue(List.of())
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  @Test
+  void testDeadlineExceededAnswersGatewayTimeout() {
+    stubFor(get("/mock/slow").willReturn(okJson(OK_RESULT_BODY).withFixedDelay(2000)));
+
+    webTestClient
+        .get()
+        .uri("/test/slow")
+        .header(Deadline.TIMEOUT_HEADER, "200ms")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.status")
+        .isEqualTo(HttpStatus.GATEWAY_TIMEOUT.value());
+  }
+
+  @Test
+  void testRequestJoiningACallAnswersWithinItsOwnDeadline() throws InterruptedException {
+    stubFor(get("/mock/slow").willReturn(okJson(OK_RESULT_BODY).withFixedDelay(400)));
+
+    final CompletableFuture<WebTestClient.BodyContentSpec> leader =
+        CompletableFuture.supplyAsync(
+            () ->
+                webTestClient
+                    .get()
+                    .uri("/test/slow")
+                    .header(Deadline.TIMEOUT_HEADER, "200ms")
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody());
+    // joins the call sent by the first request while it is in flight
+    Thread.sleep(50);
+    webTestClient
+        .get()
+        .uri("/test/slow")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.value")
+        .isEqualTo("here you have a value");
+
+    leader.join().jsonPath("$.status").isEqualTo(HttpStatus.GATEWAY_TIMEOUT.value());
+    verify(2, getRequestedFor(urlEqualTo("/mock/slow")));
+  }
+
+  @Test
+  void testNoRetryWithoutTimeLeftForIt() {
+    stubFor(get("/mock/unavailable").willReturn(serviceUnavailable()));
+
+    webTestClient
+        .get()
+        .uri("/test/unavailable")
+        .header(Deadline.TIMEOUT_HEADER, "300")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.status")
+        .isEqualTo(HttpStatus.GATEWAY_TIMEOUT.value());
+    // the first backoff alone would outlast the deadline
+    verify(1, getRequestedFor(urlEqualTo("/mock/unavailable")));
+  }
+}
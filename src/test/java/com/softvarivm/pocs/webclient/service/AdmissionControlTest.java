@@ -0,0 +1,128 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.softvarivm.pocs.webclient.configuration.AdmissionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class AdmissionControlTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  private AdmissionControl admissionControl(final int maxInFlight, final double perClientRate) {
+    final AdmissionProperties props = new AdmissionProperties();
+    props.setMaxInFlight(maxInFlight);
+    props.setPerClientRate(perClientRate);
+    props.setRetryAfter(Duration.ofSeconds(2));
+    props.setTrustedProxies(List.of("10.0.0.10"));
+    return new AdmissionControl(props, registry);
+  }
+
+  private static HttpHeaders namedBy(final String client) {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.add("X-Client-Id", client);
+    return headers;
+  }
+
+  private static InetSocketAddress from(final String address) {
+    return new InetSocketAddress(address, 40_000);
+  }
+
+  @Test
+  void testShedOverMaxInFlightWithoutSubscribing() {
+    final AdmissionControl admissionUt = admissionControl(2, 0.0);
+    final Sinks.Empty<String> upstream = Sinks.empty();
+    final Disposable first = admissionUt.admit("a", upstream.asMono()).subscribe();
+    final Disposable second = admissionUt.admit("b", upstream.asMono()).subscribe();
+    final AtomicInteger subscribed = new AtomicInteger();
+
+    final Mono<String> third = Mono.fromSupplier(() -> "c").doFirst(subscribed::incrementAndGet);
+
+    StepVerifier.create(admissionUt.admit("c", third))
+        .expectErrorSatisfies(
+            e -> {
+              assertEquals(503, ((AdmissionRejectedException) e).getSc());
+              assertEquals(Duration.ofSeconds(2), ((AdmissionRejectedException) e).getRetryAfter());
+            })
+        .verify();
+    assertEquals(0, subscribed.get());
+    assertEquals(
+        1.0, registry.get("inbound.admission.shed").tag("reason", "overloaded").counter().count());
+
+    upstream.tryEmitEmpty();
+    assertEquals(0, admissionUt.getInFlight());
+    StepVerifier.create(admissionUt.admit("c", Mono.just("c"))).expectNext("c").verifyComplete();
+    assertEquals(3.0, registry.get("inbound.admission.admitted").counter().count());
+    first.dispose();
+    second.dispose();
+  }
+
+  @Test
+  void testCancelledRequestReleasesItsPlace() {
+    final AdmissionControl admissionUt = admissionControl(1, 0.0);
+    final Disposable pending = admissionUt.admit("a", Mono.never()).subscribe();
+    assertEquals(1, admissionUt.getInFlight());
+
+    pending.dispose();
+
+    assertEquals(0, admissionUt.getInFlight());
+  }
+
+  @Test
+  void testClientOverItsRateShed() {
+    final AdmissionControl admissionUt = admissionControl(10, 0.5);
+
+    StepVerifier.create(admissionUt.admit("a", Mono.just("a"))).expectNext("a").verifyComplete();
+    StepVerifier.create(admissionUt.admit("a", Mono.just("a")))
+        .expectErrorSatisfies(
+            e -> {
+              assertEquals(429, ((AdmissionRejectedException) e).getSc());
+              assertEquals(Duration.ofSeconds(2), ((AdmissionRejectedException) e).getRetryAfter());
+            })
+        .verify();
+    // other clients keep their own rate
+    StepVerifier.create(admissionUt.admit("b", Mono.just("b"))).expectNext("b").verifyComplete();
+    assertEquals(
+        1.0,
+        registry.get("inbound.admission.shed").tag("reason", "rate_limited").counter().count());
+  }
+
+  @Test
+  void testClientHeaderIgnoredFromUntrustedAddress() {
+    final AdmissionControl admissionUt = admissionControl(10, 0.5);
+
+    assertEquals("192.168.1.7", admissionUt.clientOf(namedBy("a"), from("192.168.1.7")));
+    // a new name with every request does not dodge the rate of the address
+    StepVerifier.create(
+            admissionUt.admit(
+                admissionUt.clientOf(namedBy("a"), from("192.168.1.7")), Mono.just("a")))
+        .expectNext("a")
+        .verifyComplete();
+    StepVerifier.create(
+            admissionUt.admit(
+                admissionUt.clientOf(namedBy("b"), from("192.168.1.7")), Mono.just("b")))
+        .expectError(AdmissionRejectedException.class)
+        .verify();
+  }
+
+  @Test
+  void testClientHeaderTrustedFromProxy() {
+    final AdmissionControl admissionUt = admissionControl(10, 0.5);
+
+    assertEquals("a", admissionUt.clientOf(namedBy("a"), from("10.0.0.10")));
+    assertEquals("10.0.0.10", admissionUt.clientOf(new HttpHeaders(), from("10.0.0.10")));
+    assertNull(admissionUt.clientOf(namedBy("a"), null));
+  }
+}
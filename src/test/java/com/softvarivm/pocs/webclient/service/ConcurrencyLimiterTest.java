@@ -0,0 +1,174 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softvarivm.pocs.webclient.configuration.ConcurrencyLimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class ConcurrencyLimiterTest {
+
+  private final AtomicLong clock = new AtomicLong(1L);
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private ConcurrencyLimiter limiterUt;
+
+  @BeforeEach
+  void setUp() {
+    limiterUt = new ConcurrencyLimiter(props(Duration.ofMillis(100)), registry, clock::get);
+  }
+
+  private static ConcurrencyLimitProperties props(final Duration queueTimeout) {
+    final ConcurrencyLimitProperties props = new ConcurrencyLimitProperties();
+    props.setInitialLimit(4);
+    props.setMinLimit(2);
+    props.setMaxLimit(50);
+    // longer than a round, which is at most maxLimit calls
+    props.setLongWindow(100);
+    props.setMaxQueued(1);
+    props.setQueueTimeout(queueTimeout);
+    return props;
+  }
+
+  /** sends as many calls as the limit allows, all of them answered after {@code rttMillis}. */
+  private void roundsTaking(final int rounds, final long rttMillis) {
+    for (int r = 0; r < rounds; r++) {
+      final Sinks.Empty<Void> upstream = Sinks.empty();
+      final int calls = (int) limiterUt.getLimit();
+      for (int i = 0; i < calls; i++) {
+        limiterUt.limit(upstream.asMono()).subscribe();
+      }
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+      upstream.tryEmitEmpty();
+    }
+  }
+
+  @Test
+  void testLimitGrowsWhileLatencyFlat() {
+    roundsTaking(30, 10L);
+
+    assertTrue(limiterUt.getLimit() > 4.0);
+    assertEquals(0, limiterUt.getInFlight());
+  }
+
+  @Test
+  void testLimitShrinksWhenLatencyRises() {
+    roundsTaking(30, 10L);
+    final double flat = limiterUt.getLimit();
+
+    roundsTaking(1, 100L);
+
+    assertTrue(limiterUt.getLimit() < flat);
+  }
+
+  @Test
+  void testSustainedLatencyBecomesTheBaseline() {
+    roundsTaking(30, 10L);
+    roundsTaking(1, 100L);
+    final double shrunk = limiterUt.getLimit();
+
+    roundsTaking(60, 100L);
+
+    assertTrue(limiterUt.getLimit() > shrunk);
+  }
+
+  @Test
+  void testLimitBacksOffOnUnavailable() {
+    final ServiceRetryErrException unavailable = new ServiceRetryErrException("unavailable", 503);
+    for (int i = 0; i < 20; i++) {
+      StepVerifier.create(limiterUt.limit(Mono.error(unavailable)))
+          .expectErrorMatches(unavailable::equals)
+          .verify();
+    }
+
+    assertEquals(2.0, limiterUt.getLimit());
+  }
+
+  @Test
+  void testCallsOverTheLimitQueuedThenRejected() {
+    final Sinks.Empty<Void> upstream = Sinks.empty();
+    final Disposable[] busy = new Disposable[4];
+    for (int i = 0; i < busy.length; i++) {
+      busy[i] = limiterUt.limit(upstream.asMono()).subscribe();
+    }
+    final AtomicReference<String> answer = new AtomicReference<>();
+    limiterUt.limit(Mono.just("queued")).subscribe(answer::set);
+
+    // no room left to wait in
+    StepVerifier.create(limiterUt.limit(Mono.just("rejected")))
+        .expectError(ConcurrencyLimitExceededException.class)
+        .verify();
+    assertNull(answer.get());
+
+    busy[0].dispose();
+
+    assertEquals("queued", answer.get());
+    assertEquals(
+        1.0,
+        registry
+            .get("upstream.concurrency.rejected")
+            .tag("reason", "queue_full")
+            .counter()
+            .count());
+    upstream.tryEmitEmpty();
+    assertEquals(0, limiterUt.getInFlight());
+  }
+
+  @Test
+  void testCallWaitingTooLongRejected() {
+    final Sinks.Empty<Void> upstream = Sinks.empty();
+    for (int i = 0; i < 4; i++) {
+      limiterUt.limit(upstream.asMono()).subscribe();
+    }
+
+    StepVerifier.create(limiterUt.limit(Mono.just("late")))
+        .expectError(ConcurrencyLimitExceededException.class)
+        .verify();
+    assertEquals(
+        1.0,
+        registry
+            .get("upstream.concurrency.rejected")
+            .tag("reason", "queue_timeout")
+            .counter()
+            .count());
+
+    upstream.tryEmitEmpty();
+    assertEquals(0, limiterUt.getInFlight());
+  }
+
+  @Test
+  void testRoomGivenAsTheWaitTimesOutNotLost() throws InterruptedException {
+    limiterUt = new ConcurrencyLimiter(props(Duration.ofMillis(1)), registry, clock::get);
+    for (int i = 0; i < 2000; i++) {
+      final Sinks.Empty<Void> upstream = Sinks.empty();
+      for (int j = 0; j < 4; j++) {
+        limiterUt.limit(upstream.asMono()).subscribe();
+      }
+      final CountDownLatch ended = new CountDownLatch(1);
+      limiterUt
+          .limit(Mono.just("queued"))
+          .doFinally(signal -> ended.countDown())
+          .subscribe(answer -> {}, err -> {});
+
+      // room made about when the wait times out, on either side of it
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(800L + i % 400));
+      upstream.tryEmitEmpty();
+
+      assertTrue(ended.await(1, TimeUnit.SECONDS));
+      assertEquals(0, limiterUt.getInFlight());
+    }
+  }
+}
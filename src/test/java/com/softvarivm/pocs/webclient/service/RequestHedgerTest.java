@@ -0,0 +1,118 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.softvarivm.pocs.webclient.configuration.HedgingProperties;
+import com.softvarivm.pocs.webclient.configuration.RetryBudgetProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RequestHedgerTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private final AtomicInteger attempts = new AtomicInteger();
+  private RequestHedger hedgerUt;
+
+  @BeforeEach
+  void setUp() {
+    final HedgingProperties props = new HedgingProperties();
+    props.getDefaults().setEnabled(true);
+    props.getDefaults().setDelay(Duration.ofMillis(50));
+    final HedgingProperties.Policy disabled = new HedgingProperties.Policy();
+    props.getScenarios().put("fail", disabled);
+    hedgerUt =
+        new RequestHedger(props, new RetryBudget(new RetryBudgetProperties(), registry), registry);
+  }
+
+  /** the first attempt takes long, the following ones answer quickly. */
+  private Mono<String> attempt() {
+    return Mono.defer(
+        () -> {
+          final int n = attempts.incrementAndGet();
+          return Mono.delay(Duration.ofMillis(n == 1 ? 1_000L : 10L)).map(l -> "attempt " + n);
+        });
+  }
+
+  @Test
+  void testSlowAttemptHedged() {
+    StepVerifier.create(hedgerUt.hedge("ok", attempt())).expectNext("attempt 2").verifyComplete();
+
+    assertEquals(2, attempts.get());
+    assertEquals(1.0, registry.get("upstream.hedges.sent").tag("scenario", "ok").counter().count());
+    assertEquals(1.0, registry.get("upstream.hedges.won").tag("scenario", "ok").counter().count());
+  }
+
+  @Test
+  void testFastAttemptNotHedged() {
+    attempts.set(1);
+
+    StepVerifier.create(hedgerUt.hedge("ok", attempt())).expectNext("attempt 2").verifyComplete();
+
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  void testFailedHedgeDoesNotCancelTheFirstAttempt() {
+    final ServiceRetryErrException unavailable = new ServiceRetryErrException("unavailable", 503);
+    final Mono<String> attempt =
+        Mono.defer(
+            () ->
+                attempts.incrementAndGet() == 1
+                    ? Mono.delay(Duration.ofMillis(200L)).map(l -> "attempt 1")
+                    : Mono.error(unavailable));
+
+    StepVerifier.create(hedgerUt.hedge("ok", attempt)).expectNext("attempt 1").verifyComplete();
+
+    assertEquals(2, attempts.get());
+    assertEquals(1.0, registry.get("upstream.hedges.sent").tag("scenario", "ok").counter().count());
+    assertNull(registry.find("upstream.hedges.won").counter());
+  }
+
+  @Test
+  void testFastFailureNotHedged() {
+    final ServiceRetryErrException unavailable = new ServiceRetryErrException("unavailable", 503);
+    final Mono<String> attempt =
+        Mono.defer(
+            () -> {
+              attempts.incrementAndGet();
+              return Mono.error(unavailable);
+            });
+
+    StepVerifier.create(hedgerUt.hedge("ok", attempt))
+        .expectErrorMatches(unavailable::equals)
+        .verify(Duration.ofMillis(40));
+
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  void testErrorOfTheCallWhenBothAttemptsFail() {
+    final ServiceRetryErrException unavailable = new ServiceRetryErrException("unavailable", 503);
+    final Mono<String> attempt =
+        Mono.defer(
+            () ->
+                attempts.incrementAndGet() == 1
+                    ? Mono.delay(Duration.ofMillis(200L)).then(Mono.error(unavailable))
+                    : Mono.error(new ServiceRetryErrException("timeout", 504)));
+
+    StepVerifier.create(hedgerUt.hedge("ok", attempt))
+        .expectErrorMatches(e -> e instanceof ServiceException se && se.getSc() == 504)
+        .verify();
+
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  void testHedgingDisabledPerScenario() {
+    StepVerifier.create(hedgerUt.hedge("fail", attempt())).expectNext("attempt 1").verifyComplete();
+
+    assertEquals(1, attempts.get());
+  }
+}
@@ -0,0 +1,71 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.softvarivm.pocs.webclient.configuration.RequestLogProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RequestLogSamplerTest {
+
+  private static RequestLogSampler sampler(final double sampleRate, final double maxPerSecond) {
+    return sampler(sampleRate, maxPerSecond, 1.0);
+  }
+
+  private static RequestLogSampler sampler(
+      final double sampleRate, final double maxPerSecond, final double maxTracedPerSecond) {
+    final RequestLogProperties props = new RequestLogProperties();
+    props.setSampleRate(sampleRate);
+    props.setMaxPerSecond(maxPerSecond);
+    props.setMaxTracedPerSecond(maxTracedPerSecond);
+    return new RequestLogSampler(props);
+  }
+
+  @Test
+  void testNothingSampledWithZeroRate() {
+    final RequestLogSampler samplerUt = sampler(0.0, 100.0);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(RequestLog.UNSAMPLED, samplerUt.sample(false));
+    }
+  }
+
+  @Test
+  void testSampledRequestsAreRateLimited() {
+    final RequestLogSampler samplerUt = sampler(1.0, 1.0);
+    assertEquals(RequestLog.SAMPLED, samplerUt.sample(false));
+    assertEquals(RequestLog.UNSAMPLED, samplerUt.sample(false));
+  }
+
+  @Test
+  void testTracedRequestsLoggedWhateverTheSampling() {
+    final RequestLogSampler samplerUt = sampler(0.0, 0.0, 1.0);
+    assertEquals(RequestLog.TRACED, samplerUt.sample(true));
+  }
+
+  @Test
+  void testTracedRequestsAreRateLimited() {
+    final RequestLogSampler samplerUt = sampler(0.0, 0.0, 1.0);
+    assertEquals(RequestLog.TRACED, samplerUt.sample(true));
+    // sampled as any other
+    assertEquals(RequestLog.UNSAMPLED, samplerUt.sample(true));
+  }
+
+  @Test
+  void testNothingTracedWhenDisabled() {
+    final RequestLogSampler samplerUt = sampler(0.0, 0.0, 0.0);
+    assertEquals(RequestLog.UNSAMPLED, samplerUt.sample(true));
+  }
+
+  @Test
+  void testRequestLogCarriedInContext() {
+    StepVerifier.create(
+            Mono.deferContextual(ctx -> Mono.just(RequestLog.of(ctx).mode()))
+                .contextWrite(RequestLog.TRACED::addTo))
+        .expectNext(RequestLog.Mode.TRACED)
+        .verifyComplete();
+    StepVerifier.create(Mono.deferContextual(ctx -> Mono.just(RequestLog.of(ctx).mode())))
+        .expectNext(RequestLog.Mode.UNSAMPLED)
+        .verifyComplete();
+  }
+}
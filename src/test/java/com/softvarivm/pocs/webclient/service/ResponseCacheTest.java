@@ -0,0 +1,113 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.resetAllScenarios;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}. Every test uses its own scenario, since the cache outlives the tests.
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(properties = "service.cache.enabled=true")
+@ActiveProfiles("test")
+class ResponseCacheTest {
+
+  private static final String BODY =
+      "{\"scenario\":\"cached\",\"value\":\"here you have a value\"}";
+  private static final Map<String, String> EXPECTED =
+      Map.of("scenario", "cached", "value", "here you have a value");
+  private static final String CACHE_SCENARIO = "cache_scenario";
+  private static final String UPSTREAM_DOWN_STATE = "upstream_down";
+
+  @Autowired private StupidService serviceUt;
+
+  @AfterEach
+  void resetAfterEach() {
+    resetAllScenarios();
+  }
+
+  @Test
+  void testFreshResponseServedFromCache() {
+    stubFor(get("/mock/fresh").willReturn(okJson(BODY)));
+
+    assertEquals(EXPECTED, serviceUt.saySomething("fresh").block());
+    assertEquals(EXPECTED, serviceUt.saySomething("fresh").block());
+
+    verify(1, getRequestedFor(urlEqualTo("/mock/fresh")));
+  }
+
+  @Test
+  void testNoStoreResponseNotCached() {
+    stubFor(
+        get("/mock/nostore")
+            .willReturn(okJson(BODY).withHeader(HttpHeaders.CACHE_CONTROL, "no-store")));
+
+    serviceUt.saySomething("nostore").block();
+    serviceUt.saySomething("nostore").block();
+
+    verify(2, getRequestedFor(urlEqualTo("/mock/nostore")));
+  }
+
+  @Test
+  void testStaleResponseRevalidatedWithEtag() {
+    stubFor(
+        get("/mock/etag")
+            .willReturn(
+                okJson(BODY)
+                    .withHeader(HttpHeaders.CACHE_CONTROL, "max-age=0")
+                    .withHeader(HttpHeaders.ETAG, "\"v1\"")));
+    stubFor(
+        get("/mock/etag")
+            .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo("\"v1\""))
+            .willReturn(aResponse().withStatus(HttpStatus.NOT_MODIFIED.value())));
+
+    assertEquals(EXPECTED, serviceUt.saySomething("etag").block());
+    assertEquals(EXPECTED, serviceUt.saySomething("etag").block());
+
+    verify(2, getRequestedFor(urlEqualTo("/mock/etag")));
+    verify(
+        1,
+        getRequestedFor(urlEqualTo("/mock/etag"))
+            .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo("\"v1\"")));
+  }
+
+  @Test
+  void testStaleResponseServedWhileUpstreamUnavailable() {
+    stubFor(
+        get("/mock/stale")
+            .inScenario(CACHE_SCENARIO)
+            .whenScenarioStateIs(STARTED)
+            .willReturn(okJson(BODY).withHeader(HttpHeaders.CACHE_CONTROL, "max-age=0"))
+            .willSetStateTo(UPSTREAM_DOWN_STATE));
+    stubFor(
+        get("/mock/stale")
+            .inScenario(CACHE_SCENARIO)
+            .whenScenarioStateIs(UPSTREAM_DOWN_STATE)
+            .willReturn(aResponse().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+
+    assertEquals(EXPECTED, serviceUt.saySomething("stale").block());
+    assertEquals(EXPECTED, serviceUt.saySomething("stale").block());
+
+    // first request plus the retries of the second one
+    verify(5, getRequestedFor(urlEqualTo("/mock/stale")));
+  }
+}
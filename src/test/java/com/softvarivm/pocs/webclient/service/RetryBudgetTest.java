@@ -0,0 +1,63 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softvarivm.pocs.webclient.configuration.RetryBudgetProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private RetryBudget budgetUt;
+
+  @BeforeEach
+  void setUp() {
+    final RetryBudgetProperties props = new RetryBudgetProperties();
+    props.setRatio(0.1);
+    props.setMinPerSecond(1);
+    props.setWindow(Duration.ofSeconds(10));
+    budgetUt = new RetryBudget(props, registry, clock::get);
+  }
+
+  @Test
+  void testMinimumAllowedWithoutTraffic() {
+    for (int i = 0; i < 10; i++) {
+      assertTrue(budgetUt.tryAcquire(RetryBudget.Kind.RETRY));
+    }
+    assertFalse(budgetUt.tryAcquire(RetryBudget.Kind.HEDGE));
+    assertEquals(
+        1.0, registry.get("upstream.retrybudget.rejected").tag("kind", "hedge").counter().count());
+  }
+
+  @Test
+  void testRatioOfRequestsAllowed() {
+    for (int i = 0; i < 500; i++) {
+      budgetUt.onRequest();
+    }
+    for (int i = 0; i < 50; i++) {
+      assertTrue(budgetUt.tryAcquire(RetryBudget.Kind.RETRY));
+    }
+    assertFalse(budgetUt.tryAcquire(RetryBudget.Kind.RETRY));
+  }
+
+  @Test
+  void testBudgetRefilledOnceOutOfTheWindow() {
+    for (int i = 0; i < 10; i++) {
+      budgetUt.tryAcquire(RetryBudget.Kind.RETRY);
+    }
+    assertFalse(budgetUt.tryAcquire(RetryBudget.Kind.RETRY));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10L));
+
+    assertTrue(budgetUt.tryAcquire(RetryBudget.Kind.RETRY));
+  }
+}
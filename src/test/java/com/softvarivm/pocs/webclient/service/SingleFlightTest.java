@@ -0,0 +1,85 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class SingleFlightTest {
+
+  private MeterRegistry registry;
+  private SingleFlight singleFlightUt;
+  private final AtomicInteger calls = new AtomicInteger();
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    singleFlightUt = new SingleFlight(registry);
+  }
+
+  private Mono<String> slowCall() {
+    return Mono.delay(Duration.ofMillis(200L))
+        .map(l -> "answer")
+        .doOnSubscribe(s -> calls.incrementAndGet())
+        .doOnCancel(() -> cancelled.set(true));
+  }
+
+  @Test
+  void testConcurrentCallsCoalesced() {
+    final Mono<String> first = singleFlightUt.execute("/mock/ok", this::slowCall);
+    final Mono<String> second = singleFlightUt.execute("/mock/ok", this::slowCall);
+
+    StepVerifier.create(Mono.zip(first, second))
+        .assertNext(
+            t -> {
+              assertEquals("answer", t.getT1());
+              assertEquals("answer", t.getT2());
+            })
+        .verifyComplete();
+
+    assertEquals(1, calls.get());
+    assertEquals(
+        1.0, registry.get("upstream.singleflight.calls").tag("role", "leader").counter().count());
+    assertEquals(
+        1.0, registry.get("upstream.singleflight.calls").tag("role", "follower").counter().count());
+    assertEquals(0, singleFlightUt.inFlightCount());
+  }
+
+  @Test
+  void testSlotReleasedOnCompletion() {
+    singleFlightUt.execute("/mock/ok", this::slowCall).block();
+    singleFlightUt.execute("/mock/ok", this::slowCall).block();
+
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void testCancellingOneSubscriberDoesNotCancelTheOthers() {
+    final Disposable impatient = singleFlightUt.execute("/mock/ok", this::slowCall).subscribe();
+    final Mono<String> patient = singleFlightUt.execute("/mock/ok", this::slowCall);
+
+    StepVerifier.create(patient).then(impatient::dispose).expectNext("answer").verifyComplete();
+
+    assertEquals(1, calls.get());
+    assertFalse(cancelled.get());
+  }
+
+  @Test
+  void testCallCancelledAndSlotReleasedWhenAllSubscribersCancel() {
+    singleFlightUt.execute("/mock/ok", this::slowCall).subscribe().dispose();
+
+    assertTrue(cancelled.get());
+    assertEquals(0, singleFlightUt.inFlightCount());
+  }
+}
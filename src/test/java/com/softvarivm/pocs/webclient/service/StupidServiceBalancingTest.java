@@ -0,0 +1,87 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.serviceUnavailable;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/** requests spread over two replicas of the remote service, one of them always unavailable. */
+@SpringBootTest(
+    properties = {
+      "service.remote.balancing.consecutiveFailures=2",
+      "service.retry.minBackoff=10ms"
+    })
+@ActiveProfiles("test")
+class StupidServiceBalancingTest {
+
+  private static final String TEST_OK_PATH = "/mock/ok";
+  private static final String OK_RESULT_BODY =
+      "{\"scenario\":\"ok\",\"value\":\"here you have a value\"}";
+
+  @RegisterExtension
+  static final WireMockExtension HEALTHY =
+      WireMockExtension.newInstance()
+          .options(wireMockConfig().dynamicPort().dynamicHttpsPort())
+          .build();
+
+  @RegisterExtension
+  static final WireMockExtension UNAVAILABLE =
+      WireMockExtension.newInstance()
+          .options(wireMockConfig().dynamicPort().dynamicHttpsPort())
+          .build();
+
+  @Autowired private StupidService serviceUt;
+  @Autowired private MeterRegistry meterRegistry;
+
+  @DynamicPropertySource
+  static void replicas(final DynamicPropertyRegistry registry) {
+    registry.add(
+        "service.remote.balancing.endpoints",
+        () -> baseUrlOf(HEALTHY) + "," + baseUrlOf(UNAVAILABLE));
+  }
+
+  private static String baseUrlOf(final WireMockExtension replica) {
+    return "https://localhost:" + replica.getRuntimeInfo().getHttpsPort();
+  }
+
+  @Test
+  void testRetriesGoToAnotherReplicaAndFailingOneEjected() {
+    HEALTHY.stubFor(get(TEST_OK_PATH).willReturn(okJson(OK_RESULT_BODY)));
+    UNAVAILABLE.stubFor(get(TEST_OK_PATH).willReturn(serviceUnavailable()));
+
+    for (int i = 0; i < 10; i++) {
+      // a request sent to the unavailable replica is retried on the healthy one
+      assertEquals(
+          Map.of("scenario", "ok", "value", "here you have a value"),
+          serviceUt.saySomething("ok").block());
+    }
+
+    HEALTHY.verify(10, getRequestedFor(urlEqualTo(TEST_OK_PATH)));
+    // ejected after its second failure in a row at the latest
+    final int unavailableRequests =
+        UNAVAILABLE.findAll(getRequestedFor(urlEqualTo(TEST_OK_PATH))).size();
+    assertTrue(unavailableRequests <= 2);
+    assertEquals(
+        unavailableRequests == 2 ? 1.0 : 0.0,
+        meterRegistry
+            .get("upstream.endpoints.ejections")
+            .tag("endpoint", baseUrlOf(UNAVAILABLE))
+            .counter()
+            .count());
+  }
+}
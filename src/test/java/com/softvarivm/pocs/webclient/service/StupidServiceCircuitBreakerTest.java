@@ -0,0 +1,75 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.notFound;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.softvarivm.pocs.webclient.entities.ProblemDetails;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(
+    properties = {
+      "service.circuitbreaker.slidingWindowSize=2",
+      "service.circuitbreaker.minimumNumberOfCalls=2",
+      "service.circuitbreaker.waitDurationInOpenState=1m"
+    })
+@ActiveProfiles("test")
+class StupidServiceCircuitBreakerTest {
+
+  private static final String TEST_FAIL_PATH = "/mock/fail";
+  private static final String PARAM_SCENARIO_FAIL = "fail";
+
+  @Autowired private StupidService serviceUt;
+  @Autowired private CircuitBreaker circuitBreaker;
+
+  @AfterEach
+  void resetAfterEach() {
+    circuitBreaker.reset();
+  }
+
+  @Test
+  void testOpenCircuitFailsFastWithoutCallingUpstream() {
+    stubFor(
+        get(TEST_FAIL_PATH)
+            .willReturn(aResponse().withStatus(HttpStatus.INTERNAL_SERVER_ERROR.value())));
+
+    serviceUt.saySomething(PARAM_SCENARIO_FAIL).block();
+    serviceUt.saySomething(PARAM_SCENARIO_FAIL).block();
+    final Object result = serviceUt.saySomething(PARAM_SCENARIO_FAIL).block();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    final ProblemDetails problem = assertInstanceOf(ProblemDetails.class, result);
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), problem.getStatus());
+    verify(2, getRequestedFor(urlEqualTo(TEST_FAIL_PATH)));
+  }
+
+  @Test
+  void testClientErrorsDoNotOpenCircuit() {
+    stubFor(get(TEST_FAIL_PATH).willReturn(notFound()));
+
+    serviceUt.saySomething(PARAM_SCENARIO_FAIL).block();
+    serviceUt.saySomething(PARAM_SCENARIO_FAIL).block();
+    serviceUt.saySomething(PARAM_SCENARIO_FAIL).block();
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    verify(3, getRequestedFor(urlEqualTo(TEST_FAIL_PATH)));
+  }
+}
@@ -10,10 +10,15 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.softvarivm.pocs.webclient.entities.ProblemDetails;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -24,7 +29,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 /**
  * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
@@ -49,6 +57,7 @@ class StupidServiceTest {
   private static final String RETRY_AGAIN_STATE = "retry_again";
   private static final String RECOVERED_STATE = "recovered_state";
   @Autowired private StupidService serviceUt;
+  @Autowired private MeterRegistry meterRegistry;
 
   @AfterEach
   void resetAfterEach() {
@@ -209,6 +218,62 @@ class StupidServiceTest {
     verify(3, getRequestedFor(urlEqualTo(TEST_FAIL_PATH)));
   }
 
+  @Test
+  void testUpstreamRequestsMetered() {
+    stubFor(get(TEST_OK_PATH).willReturn(okJson(OK_RESULT_BODY)));
+
+    serviceUt.saySomething(PARAM_SCENARIO_OK).block();
+
+    // the in-flight gauge is decremented once the response has been handed over
+    await()
+        .atMost(2L, TimeUnit.SECONDS)
+        .until(() -> meterRegistry.get("upstream.requests.inflight").gauge().value() == 0.0);
+    assertTrue(
+        meterRegistry
+                .get("upstream.requests")
+                .tag("scenario", PARAM_SCENARIO_OK)
+                .tag("status", "200")
+                .timer()
+                .count()
+            >= 1);
+  }
+
+  /**
+   * concurrent requests failing with different status codes each get the {@link ProblemDetails} of
+   * their own scenario, whatever the order their answers arrive in.
+   */
+  @Test
+  void testConcurrentFailuresNotMixedUp() {
+    final int scenarios = 20;
+    for (int i = 0; i < scenarios; i++) {
+      final int status = i % 2 == 0 ? HttpStatus.NOT_FOUND.value() : HttpStatus.BAD_REQUEST.value();
+      stubFor(
+          get("/mock/mixed-" + i)
+              .willReturn(aResponse().withStatus(status).withUniformRandomDelay(0, 50)));
+    }
+
+    final List<Tuple2<Integer, Object>> answers =
+        Flux.range(0, scenarios * 5)
+            .flatMap(
+                n ->
+                    serviceUt
+                        .saySomething("mixed-" + n % scenarios)
+                        .map(answer -> Tuples.of(n % scenarios, answer)),
+                scenarios * 5)
+            .collectList()
+            .block();
+
+    assertEquals(scenarios * 5, answers.size());
+    for (final Tuple2<Integer, Object> answer : answers) {
+      final ProblemDetails problem = (ProblemDetails) answer.getT2();
+      final int i = answer.getT1();
+      assertEquals("/mock/mixed-" + i, problem.getInstance());
+      assertEquals(
+          i % 2 == 0 ? HttpStatus.NOT_FOUND.value() : HttpStatus.BAD_REQUEST.value(),
+          problem.getStatus());
+    }
+  }
+
   private Mono<String> getJsonPrettyString(final Object o) {
     final var ow = new ObjectMapper().writer().withDefaultPrettyPrinter();
     try {
@@ -0,0 +1,103 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.softvarivm.pocs.webclient.configuration.LoadBalancingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class UpstreamBalancerTest {
+
+  private static final ServiceRetryErrException UNAVAILABLE =
+      new ServiceRetryErrException("Remote server is unavailable", 503);
+
+  private final AtomicLong clock = new AtomicLong();
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+  private UpstreamBalancer balancerUt;
+  private UpstreamBalancer.Endpoint first;
+  private UpstreamBalancer.Endpoint second;
+
+  @BeforeEach
+  void setUp() {
+    final LoadBalancingProperties props = new LoadBalancingProperties();
+    props.setStrategy(LoadBalancingProperties.Strategy.LEAST_OUTSTANDING);
+    props.setConsecutiveFailures(2);
+    props.setBaseEjectionTime(Duration.ofSeconds(30));
+    final List<String> replicas = List.of("https://replica-1:8443/", "https://replica-2:8443");
+    balancerUt = new UpstreamBalancer(props, replicas, registry, clock::get);
+    first = balancerUt.endpoints().get(0);
+    second = balancerUt.endpoints().get(1);
+  }
+
+  /** sends an attempt to {@code endpoint}, by avoiding the other one. */
+  private void failOn(final UpstreamBalancer.Endpoint endpoint) {
+    final AtomicReference<UpstreamBalancer.Endpoint> previous =
+        new AtomicReference<>(endpoint == first ? second : first);
+    balancerUt
+        .balanced(
+            previous,
+            chosen -> {
+              assertSame(endpoint, chosen);
+              return Mono.error(UNAVAILABLE);
+            })
+        .onErrorResume(e -> Mono.empty())
+        .block();
+  }
+
+  @Test
+  void testPreviousReplicaAvoided() {
+    assertEquals("https://replica-1:8443/mock/ok", first.resolve("/mock/ok"));
+    for (int i = 0; i < 10; i++) {
+      assertSame(second, balancerUt.choose(first));
+      assertSame(first, balancerUt.choose(second));
+    }
+  }
+
+  @Test
+  void testFailingReplicaEjectedThenReadmitted() {
+    failOn(first);
+    failOn(first);
+
+    for (int i = 0; i < 10; i++) {
+      // not even to avoid the previous replica
+      assertSame(second, balancerUt.choose(second));
+    }
+    assertEquals(
+        1.0,
+        registry
+            .get("upstream.endpoints.ejections")
+            .tag("endpoint", "https://replica-1:8443")
+            .counter()
+            .count());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(30L));
+
+    assertSame(first, balancerUt.choose(second));
+  }
+
+  @Test
+  void testNoMoreThanHalfTheReplicasEjected() {
+    failOn(first);
+    failOn(first);
+    failOn(second);
+    failOn(second);
+
+    assertSame(second, balancerUt.choose(null));
+    assertEquals(
+        0.0,
+        registry
+            .get("upstream.endpoints.ejections")
+            .tag("endpoint", "https://replica-2:8443")
+            .counter()
+            .count());
+  }
+}
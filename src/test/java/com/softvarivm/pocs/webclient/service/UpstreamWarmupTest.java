@@ -0,0 +1,64 @@
+package com.softvarivm.pocs.webclient.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * httpsPort MUST match the value set in property {@code service.remote.httpsPort} of {@code
+ * application-test.yaml}
+ */
+@WireMockTest(httpsEnabled = true, httpsPort = 8473)
+@SpringBootTest(
+    properties = {
+      "service.warmup.enabled=true",
+      "service.warmup.passes=2",
+      "service.cache.enabled=true"
+    })
+@ActiveProfiles("test")
+class UpstreamWarmupTest {
+
+  @Autowired private UpstreamWarmup warmupUt;
+  @Autowired private ResponseCache responseCache;
+  @Autowired private ApplicationAvailability availability;
+  @Autowired private MeterRegistry meterRegistry;
+
+  /** before the application, and its warm-up, is started. */
+  @BeforeAll
+  static void stubUpstream() {
+    stubFor(get("/mock/ok").willReturn(okJson("{\"scenario\":\"ok\"}")));
+  }
+
+  @Test
+  void testReadyOnceWarm() {
+    assertTrue(warmupUt.isWarm());
+    assertEquals(ReadinessState.ACCEPTING_TRAFFIC, availability.getReadinessState());
+    assertEquals(1L, meterRegistry.get("startup.warmup").tag("result", "complete").timer().count());
+  }
+
+  @Test
+  void testEveryPassReachesTheRemoteService() {
+    assertEquals(
+        2L,
+        meterRegistry
+            .get("upstream.requests")
+            .tag("scenario", "ok")
+            .tag("status", "200")
+            .timer()
+            .count());
+    assertNull(responseCache.lookup("/mock/ok"));
+  }
+}